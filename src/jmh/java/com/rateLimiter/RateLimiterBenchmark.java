@@ -0,0 +1,133 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.JedisPooled;
+
+import java.net.URI;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@link RateLimiter#isAllowed(String)} for every limiter, at 1, 4 and all available threads.
+ *
+ * <p>The {@code hot} workload sends every request for one client, so all threads contend on the same key.
+ * The {@code spread} workload picks one of {@value #SPREAD_CLIENTS} clients at random for every request.
+ * Limits are high enough that almost every request is allowed, so the cost measured is the cost of a full decision.</p>
+ *
+ * <p>Redis limiters run against a Redis started with Testcontainers, or against {@code -Dredis.uri=redis://host:port}
+ * when that property is set. Run with {@code mvn -Pbenchmarks test-compile exec:exec}; the default arguments enable
+ * the GC profiler for allocation rates and write {@code target/jmh-result.json}. Override them with {@code -Djmh.args=...},
+ * e.g. {@code -Djmh.args="RateLimiterBenchmark.decideSingleThread -p limiter=inMemoryTokenBucket -prof gc"}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int SPREAD_CLIENTS = 100_000;
+    private static final int LIMIT = 10_000_000;
+
+    @Param({"fixedWindow", "slidingWindow", "approximateSlidingWindow", "tokenBucket", "compactTokenBucket", "gcra",
+            "inMemoryFixedWindow", "inMemoryTokenBucket"})
+    public String limiter;
+
+    @Param({"hot", "spread"})
+    public String workload;
+
+    private RedisContainer redisContainer;
+    private JedisPooled jedis;
+    private RateLimiter rateLimiter;
+    private String[] clientIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if(limiter.startsWith("inMemory")) {
+            rateLimiter = switch (limiter) {
+                case "inMemoryFixedWindow" -> new InMemoryFixedWindowRateLimiter(3600, LIMIT);
+                case "inMemoryTokenBucket" -> new InMemoryTokenBucketRateLimiter(LIMIT, LIMIT);
+                default -> throw new IllegalArgumentException("Unknown limiter " + limiter);
+            };
+        } else {
+            // one connection per benchmark thread, so threads wait on Redis and not on the pool
+            ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+            poolConfig.setMaxTotal(Runtime.getRuntime().availableProcessors() * 2);
+            poolConfig.setMaxIdle(poolConfig.getMaxTotal());
+
+            String redisUri = System.getProperty("redis.uri");
+            if(redisUri==null) {
+                redisContainer = new RedisContainer("redis:latest").withExposedPorts(6379);
+                redisContainer.start();
+                jedis = new JedisPooled(poolConfig, redisContainer.getHost(), redisContainer.getFirstMappedPort());
+            } else {
+                URI uri = URI.create(redisUri);
+                jedis = new JedisPooled(poolConfig, uri.getHost(), uri.getPort());
+            }
+            jedis.flushAll();
+            rateLimiter = switch (limiter) {
+                case "fixedWindow" -> new FixedWindowRateLimiter(jedis, 3600, LIMIT);
+                case "slidingWindow" -> new SlidingWindowRateLimiter(jedis, 3600, 60, LIMIT);
+                case "approximateSlidingWindow" -> new ApproximateSlidingWindowRateLimiter(jedis, 3600, LIMIT);
+                case "tokenBucket" -> new TokenBucketRateLimiter(jedis, LIMIT, LIMIT);
+                case "compactTokenBucket" -> new TokenBucketRateLimiter(jedis, LIMIT, LIMIT, TokenBucketRateLimiter.Storage.COMPACT_HASH);
+                case "gcra" -> new GcraRateLimiter(jedis, LIMIT, LIMIT);
+                default -> throw new IllegalArgumentException("Unknown limiter " + limiter);
+            };
+        }
+
+        clientIds = new String[workload.equals("hot") ? 1 : SPREAD_CLIENTS];
+        for (int i = 0; i < clientIds.length; i++) {
+            clientIds[i] = "client" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(jedis!=null) {
+            jedis.close();
+        }
+        if(redisContainer!=null) {
+            redisContainer.stop();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean decideSingleThread() {
+        return decide();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean decideFourThreads() {
+        return decide();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean decideAllThreads() {
+        return decide();
+    }
+
+    private boolean decide() {
+        String clientId = clientIds.length == 1 ? clientIds[0] : clientIds[ThreadLocalRandom.current().nextInt(clientIds.length)];
+        return rateLimiter.isAllowed(clientId);
+    }
+}
@@ -0,0 +1,60 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.UnifiedJedis;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Base class of the Redis backed rate limiters whose script takes the limit and window as arguments, so that the
+ * policy of a client can be passed with each request. Clients of any number of policies then share one limiter,
+ * its keys and its connection pool. Limits configured in seconds take the window of a policy rounded up to the second.
+ */
+abstract class AbstractPolicyAwareRedisRateLimiter extends AbstractRedisRateLimiter implements PolicyAwareRateLimiter {
+
+    AbstractPolicyAwareRedisRateLimiter(UnifiedJedis jedis, RedisScript script) {
+        super(jedis, script);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits, RateLimitPolicy policy) {
+        return acquire(clientId, permits, Objects.requireNonNull(policy, "policy"));
+    }
+
+    /** Decides for all clients with one pipelined flush, each under its own policy.*/
+    @Override
+    public Map<String, RateLimitResult> decideAll(Map<String, Integer> permitsByClientId,
+                                                  Function<String, RateLimitPolicy> policies) {
+        return decideBatch(permitsByClientId, Objects.requireNonNull(policies, "policies"));
+    }
+
+    /** Queues the request on the dispatcher shared with the requests under the limit of this limiter.*/
+    @Override
+    public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits, RateLimitPolicy policy) {
+        if(policy==null) {
+            return CompletableFuture.failedFuture(new NullPointerException("policy"));
+        }
+        return acquireAsync(clientId, permits, policy);
+    }
+
+    /** Returns the encoded keys holding the state of a client under the given policy, the same as under the own limit by default.*/
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis, RateLimitPolicy policy) {
+        return encodeKeys(clientId, currentTimeMillis);
+    }
+
+    /** Returns the encoded script arguments for a request under the given policy rather than the limit of this limiter.*/
+    abstract List<byte[]> encodeArgs(int permits, long currentTimeMillis, RateLimitPolicy policy);
+
+    @Override
+    List<byte[]> keysOf(String clientId, RateLimitPolicy policy, long currentTimeMillis) {
+        return policy==null ? encodeKeys(clientId, currentTimeMillis) : encodeKeys(clientId, currentTimeMillis, policy);
+    }
+
+    @Override
+    List<byte[]> argsOf(int permits, RateLimitPolicy policy, long currentTimeMillis) {
+        return policy==null ? encodeArgs(permits, currentTimeMillis) : encodeArgs(permits, currentTimeMillis, policy);
+    }
+}
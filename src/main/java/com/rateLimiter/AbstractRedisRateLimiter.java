@@ -0,0 +1,372 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Base class of the Redis backed rate limiters.
+ * Every decision is one atomic script call on a {@link UnifiedJedis}, which borrows a connection per call,
+ * so a single instance can be shared by any number of threads.
+ *
+ * <p>On a {@link JedisCluster} the client id in every key is wrapped in a hash tag, e.g. {@code rate-limit:{client1}:count},
+ * so all keys of one client live in the same slot and each script call stays on one shard. Clients spread over all
+ * shards, and batches are split per shard by the cluster pipeline, so throughput grows with the number of shards.</p>
+ */
+abstract class AbstractRedisRateLimiter implements RateLimiter {
+
+    private static final int DEFAULT_ASYNC_BATCH_SIZE = 128;
+    private static final Duration DEFAULT_ASYNC_LINGER = Duration.ofNanos(50_000);
+
+    protected final UnifiedJedis jedis;
+    private final RedisScript script;
+    private volatile RateLimiterListener listener = RateLimiterListener.NONE;
+    private volatile boolean hashTaggedKeys;
+    private volatile DenyCache denyCache;
+    private int asyncBatchSize = DEFAULT_ASYNC_BATCH_SIZE;
+    private Duration asyncLinger = DEFAULT_ASYNC_LINGER;
+    private volatile PipelineDispatcher dispatcher;
+    private boolean closed;
+
+    AbstractRedisRateLimiter(UnifiedJedis jedis, RedisScript script) {
+        this.jedis = jedis;
+        this.script = script;
+        this.hashTaggedKeys = jedis instanceof JedisCluster;
+    }
+
+    /**
+     * Sets a local cache of denied clients, whose requests are then rejected without a round trip until
+     * they could next be allowed. This keeps Redis load flat while a client floods a limit it already exceeded.
+     * @param denyCache the cache, or null to always ask Redis
+     */
+    public void setDenyCache(DenyCache denyCache) {
+        this.denyCache = denyCache;
+    }
+
+    /**
+     * Chooses whether the client id in every key is wrapped in a hash tag. This is on by default for a {@link JedisCluster}
+     * and can be turned on for proxies that shard by key. Changing it moves every client to new keys.
+     * @param hashTaggedKeys true to use hash-tagged keys
+     */
+    public void setHashTaggedKeys(boolean hashTaggedKeys) {
+        this.hashTaggedKeys = hashTaggedKeys;
+    }
+
+    /**
+     * Sets the listener that receives the decisions, Redis call latencies and failures of this limiter.
+     * @param listener the listener, or {@link RateLimiterListener#NONE} to stop recording
+     */
+    public void setListener(RateLimiterListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Configures how asynchronous decisions are coalesced. Must be called before the first asynchronous call.
+     * @param maxBatchSize the number of waiting requests that triggers a flush, 128 by default
+     * @param linger how long the first request of a batch waits for others, 50 microseconds by default
+     */
+    public synchronized void setAsyncBatching(int maxBatchSize, Duration linger) {
+        if(dispatcher!=null) {
+            throw new IllegalStateException("Asynchronous decisions have already started");
+        }
+        if(maxBatchSize<1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1 but was " + maxBatchSize);
+        }
+        this.asyncBatchSize = maxBatchSize;
+        this.asyncLinger = linger;
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        return acquire(clientId, permits, null);
+    }
+
+    /** Takes a decision under the given policy, or under the limit of this limiter when it is null.*/
+    RateLimitResult acquire(String clientId, int permits, RateLimitPolicy policy) {
+        checkPermits(permits);
+        long currentTimeMillis = System.currentTimeMillis();
+        RateLimiterListener listener = this.listener;
+        DenyCache denyCache = this.denyCache;
+        if(denyCache!=null) {
+            RateLimitResult cached = denyCache.check(clientId, permits, currentTimeMillis);
+            if(cached!=null) {
+                listener.onDecision(clientId, false);
+                return cached;
+            }
+        }
+
+        RateLimitResult result;
+        if(listener==RateLimiterListener.NONE) {
+            result = decide(clientId, permits, policy, currentTimeMillis);
+        } else {
+            long start = System.nanoTime();
+            try {
+                result = decide(clientId, permits, policy, currentTimeMillis);
+            } catch (RuntimeException e) {
+                listener.onError(RateLimiterListener.TRY_ACQUIRE, e);
+                throw e;
+            }
+            listener.onCall(RateLimiterListener.TRY_ACQUIRE, System.nanoTime() - start);
+            listener.onDecision(clientId, result.allowed());
+        }
+        if(denyCache!=null) {
+            denyCache.record(clientId, permits, result, currentTimeMillis);
+        }
+        return result;
+    }
+
+    /**
+     * Decides for all clients with one pipelined flush: the script calls are queued and sent together,
+     * and every call is still atomic on its own keys.
+     */
+    @Override
+    public Map<String, RateLimitResult> decideAll(Collection<String> clientIds) {
+        Map<String, Integer> permitsByClientId = new LinkedHashMap<>();
+        for (String clientId : new LinkedHashSet<>(clientIds)) {
+            permitsByClientId.put(clientId, 1);
+        }
+        return decideAll(permitsByClientId);
+    }
+
+    /**
+     * Decides for all clients with one pipelined flush, each charged its own number of permits.
+     * Every call is still atomic on its own keys, so either all permits of a client are consumed or none are.
+     */
+    @Override
+    public Map<String, RateLimitResult> decideAll(Map<String, Integer> permitsByClientId) {
+        return decideBatch(permitsByClientId, null);
+    }
+
+    /**
+     * Decides for all clients with one pipelined flush, each under its own policy.
+     * @param policies returns the policy of a client, or null to decide every client under the limit of this limiter
+     */
+    Map<String, RateLimitResult> decideBatch(Map<String, Integer> permitsByClientId, Function<String, RateLimitPolicy> policies) {
+        List<String> clientIds = new ArrayList<>(permitsByClientId.keySet());
+        int[] permits = new int[clientIds.size()];
+        RateLimitPolicy[] policiesOfClients = policies!=null ? new RateLimitPolicy[permits.length] : null;
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = permitsByClientId.get(clientIds.get(i));
+            checkPermits(permits[i]);
+            if(policiesOfClients!=null) {
+                policiesOfClients[i] = Objects.requireNonNull(policies.apply(clientIds.get(i)), "policy");
+            }
+        }
+
+        RateLimitResult[] results = decidePipelined(RateLimiterListener.DECIDE_ALL, clientIds, permits, policiesOfClients);
+        Map<String, RateLimitResult> resultsByClientId = new LinkedHashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            resultsByClientId.put(clientIds.get(i), results[i]);
+        }
+        return resultsByClientId;
+    }
+
+    /**
+     * Queues the request on a dispatcher shared by all callers, which sends the requests of all threads
+     * to Redis as one pipeline every few microseconds or whenever a full batch is waiting.
+     */
+    @Override
+    public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits) {
+        return acquireAsync(clientId, permits, null);
+    }
+
+    /** Queues a request under the given policy, or under the limit of this limiter when it is null.*/
+    CompletableFuture<RateLimitResult> acquireAsync(String clientId, int permits, RateLimitPolicy policy) {
+        try {
+            checkPermits(permits);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        PipelineDispatcher dispatcher = dispatcher();
+        if(dispatcher==null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Rate limiter is closed"));
+        }
+        return dispatcher.submit(clientId, permits, policy);
+    }
+
+    /** Flushes pending asynchronous decisions and stops the dispatcher thread. Later asynchronous calls fail.*/
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if(dispatcher!=null) {
+            dispatcher.close();
+            dispatcher = null;
+        }
+    }
+
+    /** Returns {@code prefix + clientId + suffix} encoded, with the client id wrapped in a hash tag when keys are hash-tagged.*/
+    byte[] key(byte[] prefix, String clientId, byte[] suffix) {
+        return Encoding.key(prefix, clientId, hashTaggedKeys, suffix, -1);
+    }
+
+    /** Returns {@code prefix + clientId + suffix + number} encoded, e.g. for keys of numbered windows.*/
+    byte[] key(byte[] prefix, String clientId, byte[] suffix, long number) {
+        return Encoding.key(prefix, clientId, hashTaggedKeys, suffix, number);
+    }
+
+    /** Returns the keys holding the state of a client at the given time as text, for tests and diagnostics.*/
+    List<String> keys(String clientId, long currentTimeMillis) {
+        return encodeKeys(clientId, currentTimeMillis).stream().map(Encoding::string).toList();
+    }
+
+    /** Returns the encoded keys holding the state of a client at the given time, in the order the script expects them.*/
+    abstract List<byte[]> encodeKeys(String clientId, long currentTimeMillis);
+
+    /** Returns the encoded script arguments for a request of the given number of permits at the given time.*/
+    abstract List<byte[]> encodeArgs(int permits, long currentTimeMillis);
+
+    /**
+     * Returns the encoded keys of a request under the given policy. Only {@link AbstractPolicyAwareRedisRateLimiter}
+     * passes policies, so this base version always has a null policy and uses the limit of this limiter.
+     */
+    List<byte[]> keysOf(String clientId, RateLimitPolicy policy, long currentTimeMillis) {
+        return encodeKeys(clientId, currentTimeMillis);
+    }
+
+    /** Returns the encoded script arguments of a request under the given policy, see {@link #keysOf}.*/
+    List<byte[]> argsOf(int permits, RateLimitPolicy policy, long currentTimeMillis) {
+        return encodeArgs(permits, currentTimeMillis);
+    }
+
+    private RateLimitResult decide(String clientId, int permits, RateLimitPolicy policy, long currentTimeMillis) {
+        return toResult(script.eval(jedis, keysOf(clientId, policy, currentTimeMillis), argsOf(permits, policy, currentTimeMillis)));
+    }
+
+    /** Decides a batch, each request under its policy, or all under the limit of this limiter when policies is null.*/
+    private RateLimitResult[] decidePipelined(String operation, List<String> clientIds, int[] permits, RateLimitPolicy[] policies) {
+        long currentTimeMillis = System.currentTimeMillis();
+        RateLimiterListener listener = this.listener;
+        DenyCache denyCache = this.denyCache;
+        RateLimitResult[] results = new RateLimitResult[clientIds.size()];
+        int[] remote = new int[clientIds.size()];
+        int remoteCount = 0;
+        for (int i = 0; i < results.length; i++) {
+            results[i] = denyCache!=null ? denyCache.check(clientIds.get(i), permits[i], currentTimeMillis) : null;
+            if(results[i]==null) {
+                remote[remoteCount++] = i;
+            }
+        }
+
+        if(remoteCount>0) {
+            if(listener==RateLimiterListener.NONE) {
+                decidePipelined(clientIds, permits, policies, remote, remoteCount, results, currentTimeMillis);
+            } else {
+                long start = System.nanoTime();
+                try {
+                    decidePipelined(clientIds, permits, policies, remote, remoteCount, results, currentTimeMillis);
+                } catch (RuntimeException e) {
+                    listener.onError(operation, e);
+                    throw e;
+                }
+                listener.onCall(operation, System.nanoTime() - start);
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            listener.onDecision(clientIds.get(i), results[i].allowed());
+        }
+        if(denyCache!=null) {
+            for (int r = 0; r < remoteCount; r++) {
+                int i = remote[r];
+                denyCache.record(clientIds.get(i), permits[i], results[i], currentTimeMillis);
+            }
+        }
+        return results;
+    }
+
+    /** Sends the requests at the given indexes as one pipeline and stores their results at the same indexes.*/
+    private void decidePipelined(List<String> clientIds, int[] permits, RateLimitPolicy[] policies, int[] indexes, int count,
+                                 RateLimitResult[] results, long currentTimeMillis) {
+        List<Response<Object>> responses = new ArrayList<>(count);
+        try (AbstractPipeline pipeline = jedis.pipelined()) {
+            for (int r = 0; r < count; r++) {
+                int i = indexes[r];
+                RateLimitPolicy policy = policies!=null ? policies[i] : null;
+                responses.add(script.eval(jedis, pipeline,
+                        keysOf(clientIds.get(i), policy, currentTimeMillis), argsOf(permits[i], policy, currentTimeMillis)));
+            }
+            pipeline.sync();
+        }
+
+        for (int r = 0; r < count; r++) {
+            int i = indexes[r];
+            Object result;
+            try {
+                result = responses.get(r).get();
+            } catch (JedisNoScriptException e) {
+                RateLimitPolicy policy = policies!=null ? policies[i] : null;
+                result = script.eval(jedis, keysOf(clientIds.get(i), policy, currentTimeMillis), argsOf(permits[i], policy, currentTimeMillis));
+            }
+            results[i] = toResult(result);
+        }
+    }
+
+    /** Returns the dispatcher, started on first use, or null once the limiter is closed.*/
+    private PipelineDispatcher dispatcher() {
+        PipelineDispatcher current = dispatcher;
+        if(current==null) {
+            synchronized (this) {
+                current = dispatcher;
+                if(current==null && !closed) {
+                    current = new PipelineDispatcher(
+                            (clientIds, permits, policies) -> decidePipelined(RateLimiterListener.ASYNC_FLUSH, clientIds, permits, policies),
+                            asyncBatchSize, asyncLinger.toNanos());
+                    dispatcher = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static void checkPermits(int permits) {
+        if(permits<1) {
+            throw new IllegalArgumentException("permits must be at least 1 but was " + permits);
+        }
+    }
+
+    /** Reads the {allowed, remaining, reset after, retry after} reply of a script.*/
+    private static RateLimitResult toResult(Object result) {
+        if(!(result instanceof List<?> reply) || reply.size()<4) {
+            throw new IllegalStateException("Empty result from Redis");
+        }
+        return new RateLimitResult((Long) reply.get(0) == 1L,
+                (Long) reply.get(1), (Long) reply.get(2), (Long) reply.get(3));
+    }
+
+    /** Wraps a single {@link Jedis} connection, which keeps the limiter single-threaded.*/
+    static UnifiedJedis unified(Jedis jedis) {
+        return new SingleConnectionJedis(jedis.getConnection());
+    }
+
+    /** Runs commands and pipelines on one borrowed connection without ever closing it.*/
+    private static final class SingleConnectionJedis extends UnifiedJedis {
+
+        private final Connection connection;
+
+        SingleConnectionJedis(Connection connection) {
+            super(connection);
+            this.connection = connection;
+        }
+
+        @Override
+        public Pipeline pipelined() {
+            return new Pipeline(connection, false);
+        }
+    }
+}
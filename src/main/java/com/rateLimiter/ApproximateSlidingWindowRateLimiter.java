@@ -0,0 +1,115 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.UnifiedJedis;
+
+import java.util.List;
+
+/**
+ * This class implements an approximate sliding window rate limiting algorithm using Jedis.
+ *
+ * <p>Only two fixed-window counters are kept per client, named after the client and the window index:
+ * {@code rate-limit-approximate: <clientId>:<window>}. The prefix is this limiter's own, so its counters never
+ * collide with the counter of a {@link FixedWindowRateLimiter} client whose id ends in a window index. The requests of the sliding window are
+ * estimated as the count of the current window plus the count of the previous window weighted by the part of it
+ * that still overlaps the sliding window.</p>
+ *
+ * <p>Accuracy: the estimate is exact when the requests of the previous window were spread evenly over it. In the
+ * worst case they were all bunched at its end, so they all still lie in the sliding window while only the weighted
+ * share {@code previousCount * (1 - elapsed / windowSize)} is counted. The sliding window then admits at most
+ * {@code limit + previousCount * elapsed / windowSize} requests: the over-admission is the share of the previous
+ * window's count that the weighting discounts, which grows toward the end of the current window and stays below
+ * {@code previousCount}, itself at most {@code limit}. Requests bunched at the start of the previous window make
+ * the estimate deny early instead. Use {@link SlidingWindowRateLimiter} when that bound is too loose.</p>
+ */
+public class ApproximateSlidingWindowRateLimiter extends AbstractPolicyAwareRedisRateLimiter {
+
+    /**
+     * KEYS[1] - request counter of the current window, KEYS[2] - request counter of the previous window
+     * ARGV[1] - window size in seconds, ARGV[2] - request limit, ARGV[3] - permits to consume,
+     * ARGV[4] - current time in milliseconds
+     * Returns {allowed, remaining permits, milliseconds until both counters stop weighing in, milliseconds until the
+     * estimate leaves room for the request if no other request arrives}, the last being 0 when allowed and -1 when
+     * the request asks for more permits than the limit.
+     */
+    private static final RedisScript SCRIPT = new RedisScript("""
+            local windowSizeInMilliseconds = tonumber(ARGV[1]) * 1000
+            local limit = tonumber(ARGV[2])
+            local permits = tonumber(ARGV[3])
+            local now = tonumber(ARGV[4])
+            local currentCount = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local previousCount = tonumber(redis.call('GET', KEYS[2]) or '0')
+            local elapsed = now % windowSizeInMilliseconds
+            local estimatedCount = previousCount * (1 - elapsed / windowSizeInMilliseconds) + currentCount
+            local allowed = 0
+            local retryAfter = 0
+            if estimatedCount + permits <= limit then
+                redis.call('INCRBY', KEYS[1], permits)
+                redis.call('PEXPIRE', KEYS[1], 2 * windowSizeInMilliseconds)
+                currentCount = currentCount + permits
+                estimatedCount = estimatedCount + permits
+                allowed = 1
+            elseif permits > limit then
+                retryAfter = -1
+            elseif currentCount + permits > limit then
+                -- wait for the next window, in which the current count weighs less and less
+                local neededFraction = 1 - (limit - permits) / currentCount
+                retryAfter = math.max(1, math.ceil(windowSizeInMilliseconds - elapsed + math.max(0, neededFraction) * windowSizeInMilliseconds))
+            else
+                local neededFraction = 1 - (limit - currentCount - permits) / previousCount
+                retryAfter = math.max(1, math.ceil(neededFraction * windowSizeInMilliseconds - elapsed))
+            end
+            local resetAfter = 0
+            if currentCount > 0 then
+                resetAfter = 2 * windowSizeInMilliseconds - elapsed
+            elseif previousCount > 0 then
+                resetAfter = windowSizeInMilliseconds - elapsed
+            end
+            return {allowed, math.max(0, math.floor(limit - estimatedCount)), resetAfter, retryAfter}
+            """);
+
+    private static final byte[] KEY_PREFIX = Encoding.bytes("rate-limit-approximate: ");
+    private static final byte[] WINDOW_SEPARATOR = Encoding.bytes(":");
+
+    private final long windowSizeInMilliseconds;
+    private final byte[] windowSize;
+    private final byte[] limit;
+
+    /**
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param windowSize the window size in seconds
+     * @param limit the number of requests allowed per window
+     */
+    public ApproximateSlidingWindowRateLimiter(UnifiedJedis jedis, long windowSize, int limit) {
+        super(jedis, SCRIPT);
+        this.windowSizeInMilliseconds = windowSize * 1000;
+        this.windowSize = Encoding.number(windowSize);
+        this.limit = Encoding.number(limit);
+    }
+
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis) {
+        return windowKeys(clientId, currentTimeMillis / windowSizeInMilliseconds);
+    }
+
+    /** The window index in the keys follows the window of the policy, so a client whose window changes starts afresh.*/
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis, RateLimitPolicy policy) {
+        return windowKeys(clientId, currentTimeMillis / (policy.windowSeconds() * 1000L));
+    }
+
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis) {
+        return List.of(windowSize, limit, Encoding.number(permits), Encoding.number(currentTimeMillis));
+    }
+
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis, RateLimitPolicy policy) {
+        return List.of(Encoding.number(policy.windowSeconds()), Encoding.number(policy.limit()),
+                Encoding.number(permits), Encoding.number(currentTimeMillis));
+    }
+
+    private List<byte[]> windowKeys(String clientId, long currentWindow) {
+        return List.of(key(KEY_PREFIX, clientId, WINDOW_SEPARATOR, currentWindow),
+                key(KEY_PREFIX, clientId, WINDOW_SEPARATOR, currentWindow - 1));
+    }
+}
@@ -0,0 +1,168 @@
+package com.rateLimiter;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Wraps a rate limiter with {@link #acquire(String, int, Duration)}, which waits for capacity instead of
+ * making the caller poll {@link #isAllowed(String)}.
+ *
+ * <p>Waiters of a client line up in FIFO order behind a fair lock. Only the head of the line asks the wrapped
+ * limiter; when denied it sleeps for exactly the {@link RateLimitResult#retryAfterMillis()} the limiter computed
+ * from its state, then asks again. The others are parked without any Redis call. Locks and sleeps park rather than
+ * pin the carrier thread, so thousands of virtual threads can wait at almost no cost.</p>
+ *
+ * <p>Non-blocking calls such as {@link #tryAcquire(String, int)} go straight to the wrapped limiter and do not queue.
+ * So do the calls with a {@link RateLimitPolicy}, which require the wrapped limiter to be a
+ * {@link PolicyAwareRateLimiter}.</p>
+ */
+public class BlockingRateLimiter implements PolicyAwareRateLimiter {
+
+    /** Poll interval bounds for limiters that do not know when capacity comes back.*/
+    private static final long MIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RateLimiter rateLimiter;
+    private final ConcurrentHashMap<String, Line> lines = new ConcurrentHashMap<>();
+
+    /** The waiters of one client, removed when the last one leaves.*/
+    private static final class Line {
+        final ReentrantLock lock = new ReentrantLock(true);
+        int waiters;
+    }
+
+    /** @param rateLimiter the limiter to wait on*/
+    public BlockingRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Consumes the given number of permits for a client, waiting up to the timeout for them to become available.
+     * Returns false without waiting if the wrapped limiter reports the permits cannot be available in time.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits to consume, at least 1
+     * @param timeout the longest time to wait
+     * @return true if the permits were consumed, false if the timeout would elapse first
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean acquire(String clientId, int permits, Duration timeout) throws InterruptedException {
+        if(permits<1) {
+            throw new IllegalArgumentException("permits must be at least 1 but was " + permits);
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Line line = lines.compute(clientId, (id, current) -> {
+            Line joined = current!=null ? current : new Line();
+            joined.waiters++;
+            return joined;
+        });
+        try {
+            if(!line.lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+            try {
+                return acquireAtHead(clientId, permits, deadline);
+            } finally {
+                line.lock.unlock();
+            }
+        } finally {
+            lines.computeIfPresent(clientId, (id, current) -> --current.waiters==0 ? null : current);
+        }
+    }
+
+    private boolean acquireAtHead(String clientId, int permits, long deadline) throws InterruptedException {
+        long pollNanos = MIN_POLL_NANOS;
+        while (true) {
+            RateLimitResult result = rateLimiter.tryAcquire(clientId, permits);
+            if(result.allowed()) {
+                return true;
+            }
+            if(result.retryAfterMillis()<0) {
+                return false;
+            }
+            long waitNanos;
+            if(result.retryAfterMillis()>0) {
+                waitNanos = TimeUnit.MILLISECONDS.toNanos(result.retryAfterMillis());
+            } else {
+                waitNanos = pollNanos;
+                pollNanos = Math.min(MAX_POLL_NANOS, pollNanos * 2);
+            }
+            if(System.nanoTime() + waitNanos - deadline > 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    @Override
+    public boolean isAllowed(String clientId, int permits) {
+        return rateLimiter.isAllowed(clientId, permits);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        return rateLimiter.tryAcquire(clientId, permits);
+    }
+
+    @Override
+    public Map<String, RateLimitResult> decideAll(Collection<String> clientIds) {
+        return rateLimiter.decideAll(clientIds);
+    }
+
+    @Override
+    public Map<String, RateLimitResult> decideAll(Map<String, Integer> permitsByClientId) {
+        return rateLimiter.decideAll(permitsByClientId);
+    }
+
+    @Override
+    public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits) {
+        return rateLimiter.tryAcquireAsync(clientId, permits);
+    }
+
+    /** @throws IllegalStateException if the wrapped limiter is not a {@link PolicyAwareRateLimiter}*/
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits, RateLimitPolicy policy) {
+        return policyAware().tryAcquire(clientId, permits, policy);
+    }
+
+    /** @throws IllegalStateException if the wrapped limiter is not a {@link PolicyAwareRateLimiter}*/
+    @Override
+    public Map<String, RateLimitResult> decideAll(Map<String, Integer> permitsByClientId,
+                                                  Function<String, RateLimitPolicy> policies) {
+        return policyAware().decideAll(permitsByClientId, policies);
+    }
+
+    /** @throws IllegalStateException if the wrapped limiter is not a {@link PolicyAwareRateLimiter}*/
+    @Override
+    public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits, RateLimitPolicy policy) {
+        try {
+            return policyAware().tryAcquireAsync(clientId, permits, policy);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Returns true when the wrapped limiter takes a policy per request.*/
+    @Override
+    public boolean supportsPolicies() {
+        return rateLimiter instanceof PolicyAwareRateLimiter policyAware && policyAware.supportsPolicies();
+    }
+
+    private PolicyAwareRateLimiter policyAware() {
+        if(!supportsPolicies()) {
+            throw new IllegalStateException("The wrapped limiter must take a policy per request");
+        }
+        return (PolicyAwareRateLimiter) rateLimiter;
+    }
+
+    /** Closes the wrapped limiter.*/
+    @Override
+    public void close() {
+        rateLimiter.close();
+    }
+}
@@ -0,0 +1,90 @@
+package com.rateLimiter;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * A concurrent map of clients whose entries expire, holding at most {@code maxSize} clients. When it is full, expired
+ * entries are dropped first, then arbitrary ones, so callers must only use it for state that can be rebuilt, such as
+ * a cached round trip.
+ *
+ * <p>Times are compared as {@code now - expiresAt}, so any clock works, including {@link System#nanoTime()}.</p>
+ *
+ * @param <V> the type of the entries
+ */
+final class BoundedExpiringMap<V> {
+
+    private final ConcurrentHashMap<String, V> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final ToLongFunction<V> expiresAt;
+
+    /**
+     * @param maxSize the maximum number of clients held at once
+     * @param expiresAt returns the time an entry expires at, on the clock of the callers
+     */
+    BoundedExpiringMap(int maxSize, ToLongFunction<V> expiresAt) {
+        if(maxSize<1) {
+            throw new IllegalArgumentException("maxSize must be at least 1 but was " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns the entry of a client, or null if there is none or it expired, in which case it is dropped.
+     * @param clientId the unique id of the client
+     * @param now the current time
+     */
+    V get(String clientId, long now) {
+        V entry = entries.get(clientId);
+        if(entry==null) {
+            return null;
+        }
+        if(now - expiresAt.applyAsLong(entry) >= 0) {
+            entries.remove(clientId, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Sets the entry of a client, evicting others first if the map is full.
+     * @param clientId the unique id of the client
+     * @param entry the entry
+     * @param now the current time
+     */
+    void put(String clientId, V entry, long now) {
+        if(entries.size()>=maxSize && !entries.containsKey(clientId)) {
+            evict(now);
+        }
+        entries.put(clientId, entry);
+    }
+
+    void remove(String clientId) {
+        entries.remove(clientId);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(entry -> now - expiresAt.applyAsLong(entry) >= 0);
+        int excess = entries.size() - maxSize + 1;
+        if(excess<=0) {
+            return;
+        }
+        // drop a tenth more than needed so that a flood of new clients does not evict on every insertion
+        Iterator<Map.Entry<String, V>> iterator = entries.entrySet().iterator();
+        for (int toEvict = excess + maxSize / 10; toEvict > 0 && iterator.hasNext(); toEvict--) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.rateLimiter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process cache in front of a {@link PolicyStore}, so that resolving the policy of a client costs a map lookup
+ * rather than a round trip, except on the first request of a client and once per {@code ttl}.
+ *
+ * <p>Clients without a policy are cached too. Entries are dropped when the store reports a change, and the TTL bounds
+ * how long a missed change lasts. The cache holds at most {@code maxSize} clients, see {@link BoundedExpiringMap}; an
+ * evicted client only costs an extra lookup.</p>
+ */
+public class CachingPolicyStore implements PolicyStore {
+
+    private record Entry(RateLimitPolicy policy, long expiresAt) {
+    }
+
+    private final PolicyStore store;
+    private final long ttlNanos;
+    private final BoundedExpiringMap<Entry> entries;
+    /** Incremented on every invalidation, so that a lookup started before it does not cache a stale policy.*/
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param store the store to cache
+     * @param maxSize the maximum number of clients cached at once
+     * @param ttl how long a policy is used before it is looked up again
+     */
+    public CachingPolicyStore(PolicyStore store, int maxSize, Duration ttl) {
+        this.entries = new BoundedExpiringMap<>(maxSize, Entry::expiresAt);
+        this.store = store;
+        this.ttlNanos = ttl.toNanos();
+        BoundedExpiringMap<Entry> entries = this.entries;
+        AtomicLong generation = this.generation;
+        store.setChangeListener(clientId -> invalidate(entries, generation, clientId));
+    }
+
+    @Override
+    public RateLimitPolicy load(String clientId) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(clientId, now);
+        if(entry!=null) {
+            return entry.policy();
+        }
+        misses.increment();
+        long generationBefore = generation.get();
+        RateLimitPolicy policy = store.load(clientId);
+        entries.put(clientId, new Entry(policy, now + ttlNanos), now);
+        if(generation.get()!=generationBefore) {
+            entries.remove(clientId);
+        }
+        return policy;
+    }
+
+    /**
+     * Drops the cached policy of a client, or of every client.
+     * @param clientId the unique id of the client, or null for every client
+     */
+    public void invalidate(String clientId) {
+        invalidate(entries, generation, clientId);
+    }
+
+    /** Returns the number of lookups that went to the store.*/
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /** Returns the number of clients currently cached.*/
+    public int size() {
+        return entries.size();
+    }
+
+    /** Closes the cached store.*/
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    /** Invalidates through the given state rather than {@code this}, so that the constructor can register it as the listener.*/
+    private static void invalidate(BoundedExpiringMap<Entry> entries, AtomicLong generation, String clientId) {
+        generation.incrementAndGet();
+        if(clientId==null) {
+            entries.clear();
+        } else {
+            entries.remove(clientId);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.UnifiedJedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * This class enforces several nested limits, such as per user, per tenant and global, in one atomic script call.
+ * A request consumes permits from every level only if every level allows it, so nothing has to be undone when an
+ * outer level denies.
+ *
+ * <pre>{@code
+ * new CompositeRateLimiter(jedis, List.of(
+ *         Rule.tokenBucket("user", userId -> userId, 20, 5),
+ *         Rule.fixedWindow("tenant", userId -> tenantOf(userId), 60, 1000),
+ *         Rule.approximateSlidingWindow("global", userId -> "all", 1, 10000)));
+ * }</pre>
+ *
+ * <p>Each level is stored under {@code rate-limit:<rule name>:<level key>}, followed by {@code :<window index>} for the
+ * two counters of an approximate sliding window level. These keys are the composite limiter's own: a level shares no
+ * state with a single-level limiter of the same client. The reported remaining permits are those of the tightest
+ * level, the reset time that of the slowest level and the retry time that of the slowest denying level.</p>
+ *
+ * <p>Keys are never hash-tagged by this class since the levels of one client usually belong to different clients
+ * of the outer levels. On a Redis Cluster the key functions must put all levels of a client in one slot, for example
+ * by returning {@code "{" + tenant + "}:" + userId} for the user level and {@code "{" + tenant + "}"} for the tenant
+ * level; a global level then requires a single slot.</p>
+ */
+public class CompositeRateLimiter extends AbstractRedisRateLimiter {
+
+    /** The algorithm enforcing one level of a {@link CompositeRateLimiter}.*/
+    public enum Algorithm {
+        /** Like {@link FixedWindowRateLimiter}, with one counter per window.*/
+        FIXED_WINDOW("fixed"),
+        /** Like {@link ApproximateSlidingWindowRateLimiter}, with the counters of the current and previous windows.*/
+        APPROXIMATE_SLIDING_WINDOW("approximate"),
+        /** Like {@link GcraRateLimiter}: a bucket of {@code limit} permits refilled evenly over the window.*/
+        TOKEN_BUCKET("gcra");
+
+        private final String code;
+
+        Algorithm(String code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * One level of a {@link CompositeRateLimiter}.
+     * @param name the name of the level, part of its keys
+     * @param algorithm the algorithm enforcing the level
+     * @param key maps the client id of a request to the key of this level, e.g. its tenant
+     * @param limit the number of permits allowed per window, or the bucket capacity
+     * @param windowMillis the window size, or the time to refill an empty bucket, in milliseconds
+     */
+    public record Rule(String name, Algorithm algorithm, Function<String, String> key, int limit, long windowMillis) {
+
+        public Rule {
+            if(limit<0) {
+                throw new IllegalArgumentException("limit must not be negative but was " + limit);
+            }
+            if(windowMillis<1) {
+                throw new IllegalArgumentException("windowMillis must be at least 1 but was " + windowMillis);
+            }
+        }
+
+        /**
+         * @param windowSize the window size in seconds
+         * @param limit the number of permits allowed per window
+         */
+        public static Rule fixedWindow(String name, Function<String, String> key, long windowSize, int limit) {
+            return new Rule(name, Algorithm.FIXED_WINDOW, key, limit, windowSize * 1000);
+        }
+
+        /**
+         * @param windowSize the window size in seconds
+         * @param limit the number of permits allowed per window
+         */
+        public static Rule approximateSlidingWindow(String name, Function<String, String> key, long windowSize, int limit) {
+            return new Rule(name, Algorithm.APPROXIMATE_SLIDING_WINDOW, key, limit, windowSize * 1000);
+        }
+
+        /**
+         * @param maxBucketCapacity the maximum number of permits in a burst
+         * @param refillRate the number of permits added per second, must be positive
+         */
+        public static Rule tokenBucket(String name, Function<String, String> key, int maxBucketCapacity, double refillRate) {
+            if(refillRate<=0) {
+                throw new IllegalArgumentException("refillRate must be positive but was " + refillRate);
+            }
+            double windowMillis = maxBucketCapacity * 1000.0 / refillRate;
+            if(!(windowMillis<Long.MAX_VALUE)) {
+                throw new IllegalArgumentException("A bucket of " + maxBucketCapacity + " permits refilled at "
+                        + refillRate + " per second takes too long to fill");
+            }
+            return new Rule(name, Algorithm.TOKEN_BUCKET, key, maxBucketCapacity, Math.max(1L, Math.round(windowMillis)));
+        }
+    }
+
+    /**
+     * KEYS - the keys of every level in order: one for fixed window and token bucket levels, the current then the
+     * previous window for approximate sliding window levels
+     * ARGV[1] - permits to consume, ARGV[2] - current time in milliseconds, ARGV[3] - number of levels,
+     * then per level: algorithm, limit, window size in milliseconds
+     * Reads every level first, then consumes from all of them only if all of them allow the request.
+     * Returns {allowed, remaining permits, milliseconds until every level is full again, milliseconds until every
+     * denying level could allow the request}, the last being 0 when allowed and -1 when a level can never allow it.
+     */
+    private static final RedisScript SCRIPT = new RedisScript("""
+            local permits = tonumber(ARGV[1])
+            local now = tonumber(ARGV[2])
+            local levels = {}
+            local keyIndex = 1
+            local allowed = 1
+            local available = math.huge
+            for i = 0, tonumber(ARGV[3]) - 1 do
+                local level = {algorithm = ARGV[4 + 3 * i], limit = tonumber(ARGV[5 + 3 * i]), window = tonumber(ARGV[6 + 3 * i])}
+                level.key = KEYS[keyIndex]
+                keyIndex = keyIndex + 1
+                if level.algorithm == 'fixed' then
+                    level.count = tonumber(redis.call('GET', level.key) or '0')
+                    level.available = level.limit - level.count
+                elseif level.algorithm == 'gcra' then
+                    level.interval = level.window / level.limit
+                    level.arrivalTime = math.max(tonumber(redis.call('GET', level.key)) or now, now)
+                    level.available = math.floor((now - level.arrivalTime) / level.interval) + level.limit
+                else
+                    level.previousKey = KEYS[keyIndex]
+                    keyIndex = keyIndex + 1
+                    level.count = tonumber(redis.call('GET', level.key) or '0')
+                    level.previousCount = tonumber(redis.call('GET', level.previousKey) or '0')
+                    level.elapsed = now % level.window
+                    level.estimate = level.previousCount * (1 - level.elapsed / level.window) + level.count
+                    level.available = math.floor(level.limit - level.estimate)
+                end
+                if level.available < permits then
+                    allowed = 0
+                end
+                available = math.min(available, level.available)
+                levels[#levels + 1] = level
+            end
+
+            local resetAfter = 0
+            local retryAfter = 0
+            for _, level in ipairs(levels) do
+                local levelResetAfter
+                local levelRetryAfter = 0
+                if level.algorithm == 'fixed' then
+                    if allowed == 1 then
+                        level.count = redis.call('INCRBY', level.key, permits)
+                        redis.call('PEXPIRE', level.key, level.window, 'NX')
+                    end
+                    levelResetAfter = redis.call('PTTL', level.key)
+                    if levelResetAfter < 0 then
+                        levelResetAfter = level.count > 0 and level.window or 0
+                    end
+                    levelRetryAfter = levelResetAfter
+                elseif level.algorithm == 'gcra' then
+                    if allowed == 1 then
+                        level.arrivalTime = level.arrivalTime + permits * level.interval
+                        redis.call('SET', level.key, level.arrivalTime, 'PX', math.max(1, math.ceil(level.arrivalTime - now)))
+                    end
+                    levelResetAfter = math.ceil(level.arrivalTime - now)
+                    levelRetryAfter = math.ceil(level.arrivalTime + permits * level.interval - level.window - now)
+                else
+                    if allowed == 1 then
+                        level.count = redis.call('INCRBY', level.key, permits)
+                        redis.call('PEXPIRE', level.key, 2 * level.window)
+                    elseif level.count + permits > level.limit then
+                        local neededFraction = 1 - (level.limit - permits) / level.count
+                        levelRetryAfter = level.window - level.elapsed + math.max(0, neededFraction) * level.window
+                    elseif level.available < permits then
+                        local neededFraction = 1 - (level.limit - level.count - permits) / level.previousCount
+                        levelRetryAfter = neededFraction * level.window - level.elapsed
+                    end
+                    levelResetAfter = 0
+                    if level.count > 0 then
+                        levelResetAfter = 2 * level.window - level.elapsed
+                    elseif level.previousCount > 0 then
+                        levelResetAfter = level.window - level.elapsed
+                    end
+                end
+                resetAfter = math.max(resetAfter, levelResetAfter)
+                if allowed == 0 and level.available < permits and retryAfter >= 0 then
+                    if permits > level.limit then
+                        retryAfter = -1
+                    else
+                        retryAfter = math.max(retryAfter, math.max(1, math.ceil(levelRetryAfter)))
+                    end
+                end
+            end
+
+            local remaining = available
+            if allowed == 1 then
+                remaining = available - permits
+            end
+            return {allowed, math.max(0, remaining), resetAfter, retryAfter}
+            """);
+
+    private static final byte[] WINDOW_SEPARATOR = Encoding.bytes(":");
+    private static final byte[] NO_SUFFIX = {};
+
+    private final List<Rule> rules;
+    private final byte[][] keyPrefixes;
+    private final List<byte[]> ruleArgs;
+
+    /**
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param rules the levels to enforce, usually from the innermost to the outermost
+     */
+    public CompositeRateLimiter(UnifiedJedis jedis, List<Rule> rules) {
+        super(jedis, SCRIPT);
+        if(rules.isEmpty()) {
+            throw new IllegalArgumentException("At least one rule is required");
+        }
+        this.rules = List.copyOf(rules);
+        this.keyPrefixes = new byte[rules.size()][];
+        List<byte[]> ruleArgs = new ArrayList<>(3 * rules.size());
+        for (int i = 0; i < keyPrefixes.length; i++) {
+            Rule rule = this.rules.get(i);
+            keyPrefixes[i] = Encoding.bytes("rate-limit:" + rule.name() + ":");
+            ruleArgs.add(Encoding.bytes(rule.algorithm().code));
+            ruleArgs.add(Encoding.number(rule.limit()));
+            ruleArgs.add(Encoding.number(rule.windowMillis()));
+        }
+        this.ruleArgs = List.copyOf(ruleArgs);
+    }
+
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis) {
+        List<byte[]> keys = new ArrayList<>(rules.size() + 1);
+        for (int i = 0; i < keyPrefixes.length; i++) {
+            Rule rule = rules.get(i);
+            String levelKey = rule.key().apply(clientId);
+            if(rule.algorithm()==Algorithm.APPROXIMATE_SLIDING_WINDOW) {
+                long currentWindow = currentTimeMillis / rule.windowMillis();
+                keys.add(Encoding.key(keyPrefixes[i], levelKey, false, WINDOW_SEPARATOR, currentWindow));
+                keys.add(Encoding.key(keyPrefixes[i], levelKey, false, WINDOW_SEPARATOR, currentWindow - 1));
+            } else {
+                keys.add(Encoding.key(keyPrefixes[i], levelKey, false, NO_SUFFIX, -1));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis) {
+        List<byte[]> args = new ArrayList<>(3 + ruleArgs.size());
+        args.add(Encoding.number(permits));
+        args.add(Encoding.number(currentTimeMillis));
+        args.add(Encoding.number(rules.size()));
+        args.addAll(ruleArgs);
+        return args;
+    }
+}
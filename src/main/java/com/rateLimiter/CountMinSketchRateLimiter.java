@@ -0,0 +1,361 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class implements an approximate sliding window rate limiting algorithm in fixed memory, whatever the
+ * number of clients, for flood protection over huge numbers of client ids such as IP addresses.
+ *
+ * <p>Instead of one counter per client, the requests of a window are counted in a count-min sketch: {@code depth}
+ * rows of {@code width} counters, each client adding its permits to one counter per row chosen by hashing. A client's
+ * count is the smallest of its counters. Like {@link ApproximateSlidingWindowRateLimiter}, the sliding window is
+ * estimated from the sketches of the current and the previous window, the latter weighted by its overlap.</p>
+ *
+ * <p>Accuracy: counters are shared by colliding clients, so a count is never under-estimated and, with probability
+ * at least {@code 1 - delta}, over-estimated by at most {@code epsilon} times the total permits of the window.
+ * Heavy hitters are therefore always limited, while a light client is only denied by mistake when it shares all of
+ * its counters with heavy traffic. Memory is {@code 2 * ceil(e / epsilon) * ceil(ln(1 / delta))} counters.</p>
+ *
+ * <p>Sketches add up, so several instances can share their counts: with a Redis client, each instance periodically
+ * adds what it counted since the last merge to a sketch per window stored in Redis with {@code BITFIELD}, and reads
+ * back the sum. Decisions stay in memory; counts of other instances are at most one merge interval old.</p>
+ *
+ * <p>Decisions of one client are serialized on one of a fixed set of locks chosen by its hash, so reading the estimate
+ * and adding the permits are one atomic step and concurrent requests of a client cannot exceed its limit. Requests of
+ * other clients can only raise shared counters, which can deny earlier but never admit more.</p>
+ */
+public class CountMinSketchRateLimiter implements RateLimiter {
+
+    private static final long HASH_SEED = 0x9E3779B97F4A7C15L;
+    private static final int MERGE_OPS_PER_COMMAND = 1024;
+    private static final byte[] OVERFLOW = Encoding.bytes("OVERFLOW");
+    private static final byte[] SATURATE = Encoding.bytes("SAT");
+    private static final byte[] INCRBY = Encoding.bytes("INCRBY");
+    private static final byte[] COUNTER_TYPE = Encoding.bytes("u32");
+    private static final int LOCK_STRIPES = 64;
+
+    private final long windowSizeInMilliseconds;
+    private final int limit;
+    private final int width;
+    private final int depth;
+    private final Sketches sketches;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ScheduledExecutorService scheduler;
+
+    /** The sketch of one window.*/
+    private static final class Window {
+        final long index;
+        final AtomicLongArray counts;
+        /** The counts merged from other instances, null until the first merge.*/
+        volatile long[] shared;
+        /** The counts of this instance already added to Redis, used by the merging thread only.*/
+        long[] merged;
+
+        Window(long index, int cells) {
+            this.index = index;
+            this.counts = new AtomicLongArray(cells);
+        }
+
+        long count(int cell) {
+            long[] shared = this.shared;
+            return counts.get(cell) + (shared!=null ? shared[cell] : 0);
+        }
+    }
+
+    private record Windows(Window current, Window previous) {
+    }
+
+    /** The sketches of the current and the previous window, rotated as time passes and merged through Redis.*/
+    private static final class Sketches {
+        final long windowSizeInMilliseconds;
+        final int cells;
+        final AtomicReference<Windows> windows;
+        final UnifiedJedis jedis;
+        final String keyPrefix;
+
+        Sketches(long windowSizeInMilliseconds, int cells, UnifiedJedis jedis, String keyPrefix) {
+            this.windowSizeInMilliseconds = windowSizeInMilliseconds;
+            this.cells = cells;
+            long currentWindow = System.currentTimeMillis() / windowSizeInMilliseconds;
+            this.windows = new AtomicReference<>(new Windows(new Window(currentWindow, cells), null));
+            this.jedis = jedis;
+            this.keyPrefix = keyPrefix;
+        }
+
+        /** Returns the windows at the given time, rotating them if a new window started.*/
+        Windows at(long currentTime) {
+            long index = currentTime / windowSizeInMilliseconds;
+            Windows current = windows.get();
+            while (current.current().index < index) {
+                Window previous = current.current().index == index - 1 ? current.current() : null;
+                Windows rotated = new Windows(new Window(index, cells), previous);
+                if(windows.compareAndSet(current, rotated)) {
+                    return rotated;
+                }
+                current = windows.get();
+            }
+            return current;
+        }
+
+        /** Adds the counts of this instance since the last merge to Redis and reads back the counts of all instances.*/
+        synchronized void merge() {
+            Windows windows = at(System.currentTimeMillis());
+            List<Window> toMerge = new ArrayList<>(2);
+            toMerge.add(windows.current());
+            if(windows.previous()!=null) {
+                toMerge.add(windows.previous());
+            }
+
+            List<Response<byte[]>> sums = new ArrayList<>(toMerge.size());
+            List<long[]> deltas = new ArrayList<>(toMerge.size());
+            try (AbstractPipeline pipeline = jedis.pipelined()) {
+                for (Window window : toMerge) {
+                    byte[] key = Encoding.bytes(keyPrefix + window.index);
+                    if(window.merged==null) {
+                        window.merged = new long[window.counts.length()];
+                    }
+                    long[] delta = new long[window.counts.length()];
+                    List<byte[]> ops = new ArrayList<>();
+                    for (int cell = 0; cell < delta.length; cell++) {
+                        delta[cell] = window.counts.get(cell) - window.merged[cell];
+                        if(delta[cell]!=0) {
+                            if(ops.isEmpty()) {
+                                ops.add(OVERFLOW);
+                                ops.add(SATURATE);
+                            }
+                            ops.add(INCRBY);
+                            ops.add(COUNTER_TYPE);
+                            ops.add(Encoding.bytes("#" + cell));
+                            ops.add(Encoding.number(delta[cell]));
+                            if(ops.size() >= 2 + 4 * MERGE_OPS_PER_COMMAND) {
+                                pipeline.bitfield(key, ops.toArray(new byte[0][]));
+                                ops.clear();
+                            }
+                        }
+                    }
+                    if(!ops.isEmpty()) {
+                        pipeline.bitfield(key, ops.toArray(new byte[0][]));
+                    }
+                    pipeline.pexpire(key, 3 * windowSizeInMilliseconds);
+                    sums.add(pipeline.get(key));
+                    deltas.add(delta);
+                }
+                pipeline.sync();
+            }
+
+            for (int i = 0; i < toMerge.size(); i++) {
+                Window window = toMerge.get(i);
+                long[] delta = deltas.get(i);
+                byte[] sum = sums.get(i).get();
+                long[] shared = new long[delta.length];
+                for (int cell = 0; cell < delta.length; cell++) {
+                    window.merged[cell] += delta[cell];
+                    long total = 0;
+                    if(sum!=null && 4 * cell + 3 < sum.length) {
+                        total = (sum[4 * cell] & 0xFFL) << 24 | (sum[4 * cell + 1] & 0xFFL) << 16
+                                | (sum[4 * cell + 2] & 0xFFL) << 8 | (sum[4 * cell + 3] & 0xFFL);
+                    }
+                    shared[cell] = Math.max(0, total - window.merged[cell]);
+                }
+                window.shared = shared;
+            }
+        }
+
+        void mergeQuietly() {
+            try {
+                merge();
+            } catch (JedisException e) {
+                // the counts not merged yet are merged on the next attempt
+            }
+        }
+    }
+
+    /**
+     * @param windowSize the window size in seconds
+     * @param limit the number of permits allowed per window
+     * @param epsilon the over-counting error as a fraction of the permits of a window, e.g. 0.001
+     * @param delta the probability of exceeding that error, e.g. 0.01
+     */
+    public CountMinSketchRateLimiter(long windowSize, int limit, double epsilon, double delta) {
+        this(windowSize, limit, epsilon, delta, null, null, null);
+    }
+
+    /**
+     * Creates a limiter whose counts are merged with the other instances of the same name through Redis.
+     * @param windowSize the window size in seconds
+     * @param limit the number of permits allowed per window over all instances
+     * @param epsilon the over-counting error as a fraction of the permits of a window, e.g. 0.001
+     * @param delta the probability of exceeding that error, e.g. 0.01
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param name the name shared by the instances, part of the keys {@code rate-limit:sketch:<name>:<window>}
+     * @param mergeInterval how often counts are merged
+     */
+    public CountMinSketchRateLimiter(long windowSize, int limit, double epsilon, double delta,
+                                     UnifiedJedis jedis, String name, Duration mergeInterval) {
+        if(epsilon<=0 || epsilon>=1) {
+            throw new IllegalArgumentException("epsilon must be between 0 and 1 but was " + epsilon);
+        }
+        if(delta<=0 || delta>=1) {
+            throw new IllegalArgumentException("delta must be between 0 and 1 but was " + delta);
+        }
+        this.windowSizeInMilliseconds = TimeUnit.SECONDS.toMillis(windowSize);
+        this.limit = limit;
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.sketches = new Sketches(windowSizeInMilliseconds, width * depth, jedis, "rate-limit:sketch:" + name + ":");
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        if(jedis==null) {
+            this.scheduler = null;
+        } else {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("rate-limiter-sketch-merge").daemon().factory());
+            long interval = mergeInterval.toNanos();
+            scheduler.scheduleWithFixedDelay(sketches::mergeQuietly, interval, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Returns the estimated number of permits a client consumed in the sliding window, never less than the real
+     * number. A client whose estimate is above the limit is a heavy hitter.
+     * @param clientId the unique id of the client
+     */
+    public double estimate(String clientId) {
+        long currentTime = System.currentTimeMillis();
+        Windows windows = sketches.at(currentTime);
+        double previousWeight = 1 - (double) (currentTime % windowSizeInMilliseconds) / windowSizeInMilliseconds;
+        long hash = hash(clientId);
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = cell(hash, row);
+            estimate = Math.min(estimate, windows.current().count(cell) + count(windows.previous(), cell) * previousWeight);
+        }
+        return estimate;
+    }
+
+    @Override
+    public boolean isAllowed(String clientId, int permits) {
+        return decide(clientId, permits, false).allowed();
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        return decide(clientId, permits, true);
+    }
+
+    /** Takes the decision, building a detailed result only if asked to so that {@link #isAllowed} allocates nothing.*/
+    private RateLimitResult decide(String clientId, int permits, boolean detailed) {
+        if(permits<1) {
+            throw new IllegalArgumentException("permits must be at least 1 but was " + permits);
+        }
+        long currentTime = System.currentTimeMillis();
+        long elapsed = currentTime % windowSizeInMilliseconds;
+        double previousWeight = 1 - (double) elapsed / windowSizeInMilliseconds;
+        long hash = hash(clientId);
+
+        double estimate = Double.MAX_VALUE;
+        long currentCount = 0;
+        long previousCount = 0;
+        boolean allowed;
+        synchronized (locks[(int) hash & (LOCK_STRIPES - 1)]) {
+            Windows windows = sketches.at(currentTime);
+            for (int row = 0; row < depth; row++) {
+                int cell = cell(hash, row);
+                long current = windows.current().count(cell);
+                long previous = count(windows.previous(), cell);
+                double rowEstimate = current + previous * previousWeight;
+                if(rowEstimate<estimate) {
+                    estimate = rowEstimate;
+                    currentCount = current;
+                    previousCount = previous;
+                }
+            }
+
+            allowed = estimate + permits <= limit;
+            if(allowed) {
+                for (int row = 0; row < depth; row++) {
+                    windows.current().counts.addAndGet(cell(hash, row), permits);
+                }
+            }
+        }
+        if(allowed) {
+            currentCount += permits;
+            estimate += permits;
+        }
+        if(!detailed) {
+            return allowed ? RateLimitResult.ALLOWED : RateLimitResult.DENIED;
+        }
+
+        double retryAfter = 0;
+        if(!allowed) {
+            if(permits>limit) {
+                retryAfter = -1;
+            } else if(currentCount + permits > limit) {
+                double neededFraction = 1 - (double) (limit - permits) / currentCount;
+                retryAfter = Math.max(1, Math.ceil(windowSizeInMilliseconds - elapsed + Math.max(0, neededFraction) * windowSizeInMilliseconds));
+            } else {
+                double neededFraction = 1 - (double) (limit - currentCount - permits) / previousCount;
+                retryAfter = Math.max(1, Math.ceil(neededFraction * windowSizeInMilliseconds - elapsed));
+            }
+        }
+        long resetAfter = 0;
+        if(currentCount>0) {
+            resetAfter = 2 * windowSizeInMilliseconds - elapsed;
+        } else if(previousCount>0) {
+            resetAfter = windowSizeInMilliseconds - elapsed;
+        }
+        return new RateLimitResult(allowed, Math.max(0, (long) Math.floor(limit - estimate)), resetAfter, (long) retryAfter);
+    }
+
+    /** Stops merging with Redis after a last merge of this instance's counts.*/
+    @Override
+    public void close() {
+        if(scheduler!=null) {
+            scheduler.shutdownNow();
+            sketches.mergeQuietly();
+        }
+    }
+
+    /** Merges the counts of this instance with Redis now rather than at the next interval.*/
+    void merge() {
+        sketches.merge();
+    }
+
+    private static long count(Window window, int cell) {
+        return window!=null ? window.count(cell) : 0;
+    }
+
+    /** Returns the counter of a row, using two halves of one 64-bit hash as in Kirsch and Mitzenmacher.*/
+    private int cell(long hash, int row) {
+        int first = (int) hash;
+        int second = (int) (hash >>> 32) | 1;
+        return row * width + Math.floorMod(first + row * second, width);
+    }
+
+    /** Returns a 64-bit FNV-1a hash of the client id, finalized with the MurmurHash3 mixer.*/
+    private static long hash(String clientId) {
+        long hash = HASH_SEED;
+        for (int i = 0; i < clientId.length(); i++) {
+            hash = (hash ^ clientId.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB93FE1A85373L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
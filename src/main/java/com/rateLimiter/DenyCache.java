@@ -0,0 +1,75 @@
+package com.rateLimiter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process cache of clients that were denied, used to reject their requests without asking Redis again
+ * until the time Redis reported they could next be allowed (the window reset or the next token refill).
+ *
+ * <p>A denial for a number of permits also covers any larger request of the same client, since no algorithm
+ * can grant more permits earlier than fewer. Smaller requests still go to Redis.</p>
+ *
+ * <p>The cache holds at most {@code maxSize} clients, see {@link BoundedExpiringMap}; an evicted client only costs an
+ * extra round trip.</p>
+ */
+public class DenyCache {
+
+    private record Entry(long blockedUntil, int permits, long remaining, long resetAt) {
+    }
+
+    private final BoundedExpiringMap<Entry> entries;
+    private final LongAdder hits = new LongAdder();
+
+    /** @param maxSize the maximum number of denied clients remembered at once*/
+    public DenyCache(int maxSize) {
+        this.entries = new BoundedExpiringMap<>(maxSize, Entry::blockedUntil);
+    }
+
+    /**
+     * Returns the local denial of a request if the client is known to be over its limit.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits requested
+     * @param currentTimeMillis the current time in milliseconds
+     * @return the denial, or null if the request must be decided by Redis
+     */
+    RateLimitResult check(String clientId, int permits, long currentTimeMillis) {
+        Entry entry = entries.get(clientId, currentTimeMillis);
+        if(entry==null || permits<entry.permits()) {
+            return null;
+        }
+        hits.increment();
+        long resetAfter = entry.resetAt()<0 ? -1 : Math.max(0, entry.resetAt() - currentTimeMillis);
+        return new RateLimitResult(false, entry.remaining(), resetAfter, entry.blockedUntil() - currentTimeMillis);
+    }
+
+    /**
+     * Remembers a denial reported by Redis.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits that were denied
+     * @param result the denial
+     * @param currentTimeMillis the time the request was decided at
+     */
+    void record(String clientId, int permits, RateLimitResult result, long currentTimeMillis) {
+        if(result.allowed() || result.retryAfterMillis()<=0) {
+            return;
+        }
+        long resetAt = result.resetAfterMillis()<0 ? -1 : currentTimeMillis + result.resetAfterMillis();
+        entries.put(clientId, new Entry(currentTimeMillis + result.retryAfterMillis(), permits, result.remaining(), resetAt),
+                currentTimeMillis);
+    }
+
+    /** Returns the number of requests denied locally without a round trip.*/
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /** Returns the number of clients currently remembered.*/
+    public int size() {
+        return entries.size();
+    }
+
+    /** Forgets every denial, for instance after limits were raised.*/
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,104 @@
+package com.rateLimiter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes keys and script arguments straight into the bytes sent to Redis, without intermediate strings.
+ * Constant parts are encoded once by the limiters; a decision then only allocates its key and timestamp arrays.
+ */
+final class Encoding {
+
+    private static final byte[][] SMALL_NUMBERS = new byte[1024][];
+
+    static {
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = bytes(String.valueOf(i));
+        }
+    }
+
+    private Encoding() {
+    }
+
+    /** Returns the UTF-8 bytes of a string.*/
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the string of UTF-8 bytes.*/
+    static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the decimal digits of a number; small non-negative numbers such as permits come from a shared cache.*/
+    static byte[] number(long value) {
+        if(value>=0 && value<SMALL_NUMBERS.length) {
+            return SMALL_NUMBERS[(int) value];
+        }
+        byte[] digits = new byte[length(value)];
+        write(value, digits, digits.length);
+        return digits;
+    }
+
+    /** Returns the decimal form of a number as {@link String#valueOf(double)} writes it.*/
+    static byte[] number(double value) {
+        return bytes(String.valueOf(value));
+    }
+
+    /**
+     * Returns {@code prefix + clientId + suffix}, with the client id wrapped in a hash tag if asked to.
+     * @param number appended after the suffix if not negative, e.g. a window index
+     */
+    static byte[] key(byte[] prefix, String clientId, boolean hashTagged, byte[] suffix, long number) {
+        int idLength = clientId.length();
+        for (int i = 0; i < idLength; i++) {
+            if(clientId.charAt(i) >= 0x80) {
+                return slowKey(prefix, clientId, hashTagged, suffix, number);
+            }
+        }
+        int tagLength = hashTagged ? 2 : 0;
+        int numberLength = number>=0 ? length(number) : 0;
+        byte[] key = new byte[prefix.length + tagLength + idLength + suffix.length + numberLength];
+        System.arraycopy(prefix, 0, key, 0, prefix.length);
+        int position = prefix.length;
+        if(hashTagged) {
+            key[position++] = '{';
+        }
+        for (int i = 0; i < idLength; i++) {
+            key[position++] = (byte) clientId.charAt(i);
+        }
+        if(hashTagged) {
+            key[position++] = '}';
+        }
+        System.arraycopy(suffix, 0, key, position, suffix.length);
+        if(number>=0) {
+            write(number, key, key.length);
+        }
+        return key;
+    }
+
+    private static byte[] slowKey(byte[] prefix, String clientId, boolean hashTagged, byte[] suffix, long number) {
+        String id = hashTagged ? "{" + clientId + "}" : clientId;
+        return bytes(string(prefix) + id + string(suffix) + (number>=0 ? String.valueOf(number) : ""));
+    }
+
+    private static int length(long value) {
+        int length = value<0 ? 2 : 1;
+        for (long rest = Math.abs(value / 10); rest > 0; rest /= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    /** Writes the digits of a number so that they end right before {@code end}.*/
+    private static void write(long value, byte[] target, int end) {
+        long rest = value;
+        int position = end;
+        do {
+            target[--position] = (byte) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        if(value<0) {
+            target[--position] = '-';
+        }
+    }
+}
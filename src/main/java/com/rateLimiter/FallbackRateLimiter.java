@@ -0,0 +1,258 @@
+package com.rateLimiter;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps a rate limiter, usually a Redis backed one, so that a slow or failing Redis never holds a request thread
+ * longer than a latency budget.
+ *
+ * <p>Each decision is requested with {@link RateLimiter#tryAcquireAsync(String, int)} and awaited for at most the
+ * budget. When the wrapped limiter fails or runs out of time, the decision is taken by a fallback limiter instead:
+ * usually an in-memory approximation of the same policy such as {@link InMemoryTokenBucketRateLimiter}, or
+ * {@link #FAIL_OPEN} or {@link #FAIL_CLOSED}. A decision that arrives late still counts in Redis.</p>
+ *
+ * <p>After {@code failureThreshold} consecutive failures the circuit opens and every decision goes to the fallback
+ * for {@code openDuration}, without calling the wrapped limiter. Then a single probe call is let through: if it
+ * succeeds the circuit closes, otherwise it stays open for another {@code openDuration}.</p>
+ *
+ * <p>Limiters that decide on the calling thread, such as the in-memory ones, complete their future before it is
+ * awaited, so the budget only bounds limiters that are asynchronous for real, such as the Redis backed ones.</p>
+ *
+ * <p>Requests with a {@link RateLimitPolicy} go to both limiters with their policy, which requires both limiters to be
+ * {@link PolicyAwareRateLimiter}s.</p>
+ */
+public class FallbackRateLimiter implements PolicyAwareRateLimiter {
+
+    /** A fallback that allows every request, to keep serving while Redis is down.*/
+    public static final PolicyAwareRateLimiter FAIL_OPEN = new ConstantRateLimiter(RateLimitResult.ALLOWED);
+
+    /** A fallback that denies every request, to protect the backend while Redis is down.*/
+    public static final PolicyAwareRateLimiter FAIL_CLOSED = new ConstantRateLimiter(RateLimitResult.DENIED);
+
+    /** Takes the same decision for every request, whatever its policy.*/
+    private record ConstantRateLimiter(RateLimitResult result) implements PolicyAwareRateLimiter {
+
+        @Override
+        public RateLimitResult tryAcquire(String clientId, int permits) {
+            return result;
+        }
+
+        @Override
+        public RateLimitResult tryAcquire(String clientId, int permits, RateLimitPolicy policy) {
+            return result;
+        }
+    }
+
+    private final RateLimiter primary;
+    private final RateLimiter fallback;
+    private final long latencyBudgetNanos;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean open = new AtomicBoolean();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile long probeAt;
+    private volatile RateLimiterListener listener = RateLimiterListener.NONE;
+
+    /**
+     * @param primary the limiter to use while it is healthy
+     * @param fallback the limiter to use when the primary one is slow, failing or its circuit is open
+     * @param latencyBudget the longest time to wait for the primary limiter
+     * @param failureThreshold the number of consecutive failures or timeouts that opens the circuit
+     * @param openDuration how long the circuit stays open before the primary limiter is probed again
+     */
+    public FallbackRateLimiter(RateLimiter primary, RateLimiter fallback, Duration latencyBudget,
+                               int failureThreshold, Duration openDuration) {
+        if(failureThreshold<1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1 but was " + failureThreshold);
+        }
+        this.primary = primary;
+        this.fallback = fallback;
+        this.latencyBudgetNanos = latencyBudget.toNanos();
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Sets the listener that receives the decisions of this limiter and the reason of every fallback.
+     * Use a different listener than the wrapped limiters' to not count their decisions twice.
+     * @param listener the listener, or {@link RateLimiterListener#NONE} to stop recording
+     */
+    public void setListener(RateLimiterListener listener) {
+        this.listener = listener;
+    }
+
+    /** Returns true while decisions go to the fallback limiter without calling the primary one.*/
+    public boolean isCircuitOpen() {
+        return open.get();
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        return decide(clientId, permits, null);
+    }
+
+    /** @throws IllegalStateException if a wrapped limiter is not a {@link PolicyAwareRateLimiter}*/
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits, RateLimitPolicy policy) {
+        checkPolicies();
+        return decide(clientId, permits, Objects.requireNonNull(policy, "policy"));
+    }
+
+    /** @throws IllegalStateException if a wrapped limiter is not a {@link PolicyAwareRateLimiter}*/
+    @Override
+    public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits, RateLimitPolicy policy) {
+        try {
+            checkPolicies();
+            return decideAsync(clientId, permits, Objects.requireNonNull(policy, "policy"));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Returns true when both wrapped limiters take a policy per request.*/
+    @Override
+    public boolean supportsPolicies() {
+        return primary instanceof PolicyAwareRateLimiter policyAwarePrimary && policyAwarePrimary.supportsPolicies()
+                && fallback instanceof PolicyAwareRateLimiter policyAwareFallback && policyAwareFallback.supportsPolicies();
+    }
+
+    /** Takes a decision under the given policy, or under the limits of the wrapped limiters when it is null.*/
+    private RateLimitResult decide(String clientId, int permits, RateLimitPolicy policy) {
+        checkPermits(permits);
+        Boolean probe = admit();
+        if(probe==null) {
+            return fallback(clientId, permits, policy, RateLimiterListener.FALLBACK_CIRCUIT_OPEN);
+        }
+
+        CompletableFuture<RateLimitResult> future = callPrimary(clientId, permits, policy);
+        RateLimitResult result = null;
+        Throwable failure = null;
+        try {
+            result = future.get(latencyBudgetNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } catch (TimeoutException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        }
+        return settle(clientId, permits, policy, probe, result, failure);
+    }
+
+    @Override
+    public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits) {
+        try {
+            return decideAsync(clientId, permits, null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<RateLimitResult> decideAsync(String clientId, int permits, RateLimitPolicy policy) {
+        checkPermits(permits);
+        Boolean probe = admit();
+        if(probe==null) {
+            return CompletableFuture.completedFuture(fallback(clientId, permits, policy, RateLimiterListener.FALLBACK_CIRCUIT_OPEN));
+        }
+        return callPrimary(clientId, permits, policy)
+                .orTimeout(latencyBudgetNanos, TimeUnit.NANOSECONDS)
+                .handle((result, failure) -> settle(clientId, permits, policy, probe, result, failure));
+    }
+
+    /** Closes the primary and the fallback limiters.*/
+    @Override
+    public void close() {
+        try {
+            primary.close();
+        } finally {
+            fallback.close();
+        }
+    }
+
+    private CompletableFuture<RateLimitResult> callPrimary(String clientId, int permits, RateLimitPolicy policy) {
+        try {
+            if(policy!=null) {
+                return ((PolicyAwareRateLimiter) primary).tryAcquireAsync(clientId, permits, policy);
+            }
+            return primary.tryAcquireAsync(clientId, permits);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Returns false to call the primary limiter, true to call it as the probe of an open circuit,
+     * or null to use the fallback without calling it.
+     */
+    private Boolean admit() {
+        if(!open.get()) {
+            return Boolean.FALSE;
+        }
+        if(System.nanoTime() - probeAt >= 0 && probing.compareAndSet(false, true)) {
+            return Boolean.TRUE;
+        }
+        return null;
+    }
+
+    private RateLimitResult settle(String clientId, int permits, RateLimitPolicy policy, boolean probe,
+                                   RateLimitResult result, Throwable failure) {
+        if(failure==null) {
+            if(consecutiveFailures.get()!=0) {
+                consecutiveFailures.set(0);
+            }
+            if(probe) {
+                open.set(false);
+                probing.set(false);
+            }
+            listener.onDecision(clientId, result.allowed());
+            return result;
+        }
+
+        if(failure instanceof CompletionException && failure.getCause()!=null) {
+            failure = failure.getCause();
+        }
+        if(probe) {
+            probeAt = System.nanoTime() + openDurationNanos;
+            probing.set(false);
+        } else if(!open.get() && consecutiveFailures.incrementAndGet()>=failureThreshold) {
+            probeAt = System.nanoTime() + openDurationNanos;
+            if(open.compareAndSet(false, true)) {
+                consecutiveFailures.set(0);
+            }
+        }
+        return fallback(clientId, permits, policy, failure instanceof TimeoutException
+                ? RateLimiterListener.FALLBACK_TIMEOUT : RateLimiterListener.FALLBACK_ERROR);
+    }
+
+    private RateLimitResult fallback(String clientId, int permits, RateLimitPolicy policy, String reason) {
+        RateLimiterListener listener = this.listener;
+        listener.onFallback(reason);
+        RateLimitResult result = policy!=null
+                ? ((PolicyAwareRateLimiter) fallback).tryAcquire(clientId, permits, policy)
+                : fallback.tryAcquire(clientId, permits);
+        listener.onDecision(clientId, result.allowed());
+        return result;
+    }
+
+    private void checkPolicies() {
+        if(!supportsPolicies()) {
+            throw new IllegalStateException("Both wrapped limiters must take a policy per request");
+        }
+    }
+
+    private static void checkPermits(int permits) {
+        if(permits<1) {
+            throw new IllegalArgumentException("permits must be at least 1 but was " + permits);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.rateLimiter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps policies in a local properties file, with the same layout as {@link RedisPolicyStore}: the entry of a client
+ * holds either its policy or the name of its tier, whose policy is in the entry {@code tier.<name>}.
+ * <pre>
+ * tier.gold=10000/1m
+ * customer42=gold
+ * customer7=50/1s
+ * </pre>
+ *
+ * <p>The whole file is held in memory, so lookups make no I/O. The file is checked for changes every
+ * {@code checkInterval} and reloaded when modified; every policy is then reported changed. A file that no longer
+ * parses is ignored and the policies loaded before are kept.</p>
+ */
+public class FilePolicyStore implements PolicyStore {
+
+    private final PolicyFile policyFile;
+    private final ScheduledExecutorService scheduler;
+
+    /** The policies last loaded from the file, apart from the store so that the reload task never sees a partial store.*/
+    private static final class PolicyFile {
+        final Path file;
+        volatile Map<String, RateLimitPolicy> policies;
+        volatile FileTime loadedModifiedTime;
+        volatile Consumer<String> listener = clientId -> { };
+
+        PolicyFile(Path file) {
+            this.file = file;
+        }
+
+        /** Reloads the file if it was modified since it was last loaded, and reports every policy changed.*/
+        void reloadIfModified() {
+            try {
+                if(Files.getLastModifiedTime(file).equals(loadedModifiedTime)) {
+                    return;
+                }
+                reload();
+            } catch (IOException | RuntimeException e) {
+                // keep the policies loaded before until the file is fixed
+                return;
+            }
+            listener.accept(null);
+        }
+
+        void reload() {
+            Properties properties = new Properties();
+            FileTime modifiedTime;
+            try (Reader reader = Files.newBufferedReader(file)) {
+                modifiedTime = Files.getLastModifiedTime(file);
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read policies from " + file, e);
+            }
+
+            Map<String, RateLimitPolicy> policies = new HashMap<>();
+            for (String clientId : properties.stringPropertyNames()) {
+                if(clientId.startsWith(RedisPolicyStore.TIER_PREFIX)) {
+                    continue;
+                }
+                String value = properties.getProperty(clientId).trim();
+                if(value.indexOf('/')<0) {
+                    value = properties.getProperty(RedisPolicyStore.TIER_PREFIX + value);
+                    if(value==null) {
+                        continue;
+                    }
+                }
+                policies.put(clientId, RateLimitPolicy.parse(value));
+            }
+            this.policies = policies;
+            this.loadedModifiedTime = modifiedTime;
+        }
+    }
+
+    /**
+     * @param file the properties file
+     * @param checkInterval how often the file is checked for changes
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws IllegalArgumentException if a policy cannot be parsed
+     */
+    public FilePolicyStore(Path file, Duration checkInterval) {
+        this.policyFile = new PolicyFile(file);
+        policyFile.reload();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("rate-limiter-policy-file").daemon().factory());
+        long interval = checkInterval.toNanos();
+        scheduler.scheduleWithFixedDelay(policyFile::reloadIfModified, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public RateLimitPolicy load(String clientId) {
+        return policyFile.policies.get(clientId);
+    }
+
+    @Override
+    public void setChangeListener(Consumer<String> listener) {
+        policyFile.listener = listener;
+    }
+
+    /** Stops checking the file for changes.*/
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /** Reloads the file now if it was modified, rather than at the next check.*/
+    void reloadIfModified() {
+        policyFile.reloadIfModified();
+    }
+}
@@ -1,43 +1,79 @@
 package com.rateLimiter;
 
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Transaction;
-import redis.clients.jedis.args.ExpiryOption;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.util.List;
 
 /** This class implements a fixed window size rate limiting algorithm using Jedis.*/
-public class FixedWindowRateLimiter {
+public class FixedWindowRateLimiter extends AbstractPolicyAwareRedisRateLimiter {
+
+    /**
+     * KEYS[1] - the request counter of the client
+     * ARGV[1] - window size in seconds, ARGV[2] - request limit, ARGV[3] - permits to consume
+     * Returns {allowed, remaining permits, milliseconds until the window resets, milliseconds until the request could
+     * be allowed}, the last being 0 when allowed and -1 when the request asks for more permits than the limit.
+     */
+    private static final RedisScript SCRIPT = new RedisScript("""
+            local windowSize = tonumber(ARGV[1])
+            local limit = tonumber(ARGV[2])
+            local permits = tonumber(ARGV[3])
+            local currentCount = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local allowed = 0
+            if currentCount + permits <= limit then
+                currentCount = redis.call('INCRBY', KEYS[1], permits)
+                redis.call('EXPIRE', KEYS[1], windowSize, 'NX')
+                allowed = 1
+            end
+            local resetAfter = redis.call('PTTL', KEYS[1])
+            if resetAfter < 0 then
+                resetAfter = windowSize * 1000
+            end
+            local retryAfter = 0
+            if allowed == 0 then
+                retryAfter = resetAfter
+                if permits > limit then
+                    retryAfter = -1
+                end
+            end
+            return {allowed, math.max(0, limit - currentCount), resetAfter, retryAfter}
+            """);
 
-    private final Jedis jedis;
-    private final int windowSize;
-    private final int limit;
+    private static final byte[] KEY_PREFIX = Encoding.bytes("rate-limit: ");
+    private static final byte[] NO_SUFFIX = {};
 
-    public FixedWindowRateLimiter(Jedis jedis, int windowSize, int limit) {
-        this.jedis = jedis;
-        this.windowSize = windowSize;
-        this.limit = limit;
-    }
+    private final byte[] windowSize;
+    private final byte[] limit;
 
     /**
-     * Checks if a client is within their allowed request limit.
-     * If yes, the request is allowed and the counter is updated. If not, the request is blocked.
-     * @param clientId the unique id of the client
-     * @return True if request is allowed. False if not.
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param windowSize the window size in seconds
+     * @param limit the number of requests allowed per window
      */
-    public boolean isAllowed(String clientId) {
-        String key = "rate-limit: " + clientId;
+    public FixedWindowRateLimiter(UnifiedJedis jedis, int windowSize, int limit) {
+        super(jedis, SCRIPT);
+        this.windowSize = Encoding.number(windowSize);
+        this.limit = Encoding.number(limit);
+    }
 
-        String currentCountVal = jedis.get(key);
-        int currentCount = currentCountVal!=null?Integer.parseInt(currentCountVal):0;
+    /** @deprecated a single {@link Jedis} connection is not thread-safe, use {@link #FixedWindowRateLimiter(UnifiedJedis, int, int)}.*/
+    @Deprecated
+    public FixedWindowRateLimiter(Jedis jedis, int windowSize, int limit) {
+        this(unified(jedis), windowSize, limit);
+    }
 
-        boolean isAllowed = currentCount<limit;
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis) {
+        return List.of(key(KEY_PREFIX, clientId, NO_SUFFIX));
+    }
 
-        if(isAllowed) {
-            Transaction transaction = jedis.multi();
-            transaction.incr(key);
-            transaction.expire(key, windowSize, ExpiryOption.NX);
-            transaction.exec();
-        }
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis) {
+        return List.of(windowSize, limit, Encoding.number(permits));
+    }
 
-        return isAllowed;
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis, RateLimitPolicy policy) {
+        return List.of(Encoding.number(policy.windowSeconds()), Encoding.number(policy.limit()), Encoding.number(permits));
     }
 }
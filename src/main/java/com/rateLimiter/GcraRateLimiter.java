@@ -0,0 +1,85 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.UnifiedJedis;
+
+import java.util.List;
+
+/**
+ * This class implements the generic cell rate algorithm (GCRA) using Jedis.
+ * It follows the same semantics as {@link TokenBucketRateLimiter}: a client may send a burst of up to
+ * {@code maxBucketCapacity} permits, then {@code refillRate} permits per second.
+ *
+ * <p>The only state of a client is its theoretical arrival time, the instant at which its bucket would be full
+ * again, in one key {@code rate-limit:<clientId>:tat}. A request of {@code n} permits pushes it {@code n} emission
+ * intervals forward and is allowed if it then lies at most one full bucket ahead of now. The key expires at the
+ * theoretical arrival time, so idle clients leave nothing behind.</p>
+ */
+public class GcraRateLimiter extends AbstractPolicyAwareRedisRateLimiter {
+
+    /**
+     * KEYS[1] - theoretical arrival time in milliseconds
+     * ARGV[1] - bucket capacity, ARGV[2] - refill rate in permits per second, ARGV[3] - permits to consume,
+     * ARGV[4] - current time in milliseconds
+     * Returns {allowed, remaining permits, milliseconds until the bucket is full, milliseconds until the request
+     * could be allowed}, the last being 0 when allowed and -1 when the request asks for more permits than the bucket holds.
+     */
+    private static final RedisScript SCRIPT = new RedisScript("""
+            local maxBucketCapacity = tonumber(ARGV[1])
+            local emissionInterval = 1000 / tonumber(ARGV[2])
+            local permits = tonumber(ARGV[3])
+            local now = tonumber(ARGV[4])
+            local burstTolerance = maxBucketCapacity * emissionInterval
+            local theoreticalArrivalTime = math.max(tonumber(redis.call('GET', KEYS[1])) or now, now)
+            local nextArrivalTime = theoreticalArrivalTime + permits * emissionInterval
+            local allowAt = nextArrivalTime - burstTolerance
+            if allowAt > now then
+                local retryAfter = math.max(1, math.ceil(allowAt - now))
+                if permits > maxBucketCapacity then
+                    retryAfter = -1
+                end
+                local remaining = math.floor((now - theoreticalArrivalTime + burstTolerance) / emissionInterval)
+                return {0, remaining, math.ceil(theoreticalArrivalTime - now), retryAfter}
+            end
+            local resetAfter = math.max(1, math.ceil(nextArrivalTime - now))
+            redis.call('SET', KEYS[1], nextArrivalTime, 'PX', resetAfter)
+            return {1, math.floor((now - allowAt) / emissionInterval), resetAfter, 0}
+            """);
+
+    private static final byte[] KEY_PREFIX = Encoding.bytes("rate-limit:");
+    private static final byte[] KEY_SUFFIX = Encoding.bytes(":tat");
+
+    private final byte[] maxBucketCapacity;
+    private final byte[] refillRate;
+
+    /**
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param maxBucketCapacity the maximum number of permits in a burst
+     * @param refillRate the number of permits added per second, must be positive
+     */
+    public GcraRateLimiter(UnifiedJedis jedis, int maxBucketCapacity, double refillRate) {
+        super(jedis, SCRIPT);
+        if(refillRate<=0) {
+            throw new IllegalArgumentException("refillRate must be positive but was " + refillRate);
+        }
+        this.maxBucketCapacity = Encoding.number(maxBucketCapacity);
+        this.refillRate = Encoding.number(refillRate);
+    }
+
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis) {
+        return List.of(key(KEY_PREFIX, clientId, KEY_SUFFIX));
+    }
+
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis) {
+        return List.of(maxBucketCapacity, refillRate, Encoding.number(permits), Encoding.number(currentTimeMillis));
+    }
+
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis, RateLimitPolicy policy) {
+        // a limit of 0 still needs a finite emission interval, its burst of 0 then denies every request
+        double refillRate = Math.max(1, policy.limit()) * 1000.0 / policy.windowMillis();
+        return List.of(Encoding.number(policy.limit()), Encoding.number(refillRate),
+                Encoding.number(permits), Encoding.number(currentTimeMillis));
+    }
+}
@@ -0,0 +1,166 @@
+package com.rateLimiter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracks the clients with the most requests using the Space-Saving algorithm over a bounded number of counters.
+ * Only one in {@code sampleRate} requests is recorded, which keeps the cost on the hot path to a random number
+ * for most calls. Reported counts are scaled back up and over-estimate a client by at most the smallest tracked count.
+ *
+ * <p>Counters are kept in a stream-summary: buckets of counters sharing the same count, linked in increasing order
+ * of count. Incrementing a counter moves it to the next bucket and evicting the smallest takes any counter of the
+ * first bucket, so recording a request costs O(1) whatever the capacity.</p>
+ */
+public class HotClientTracker {
+
+    private final int capacity;
+    private final int sampleRate;
+    private final Map<String, Counter> counters;
+    /** The bucket with the smallest count, null while nothing is tracked.*/
+    private Bucket smallest;
+
+    /** The counters sharing one count, linked to the buckets of the next smaller and larger counts.*/
+    private static final class Bucket {
+        final long count;
+        Bucket previous;
+        Bucket next;
+        Counter first;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    /** The counter of one client, linked to the other counters of its bucket.*/
+    private static final class Counter {
+        String clientId;
+        Bucket bucket;
+        Counter previous;
+        Counter next;
+    }
+
+    /**
+     * @param capacity the number of clients tracked at once, a few times the number of hot clients to report
+     * @param sampleRate record one in this many requests, 1 to record every request
+     */
+    public HotClientTracker(int capacity, int sampleRate) {
+        if(capacity<1 || sampleRate<1) {
+            throw new IllegalArgumentException("capacity and sampleRate must be at least 1");
+        }
+        this.capacity = capacity;
+        this.sampleRate = sampleRate;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Records one request of a client.
+     * @param clientId the unique id of the client
+     */
+    public void record(String clientId) {
+        if(sampleRate>1 && ThreadLocalRandom.current().nextInt(sampleRate)!=0) {
+            return;
+        }
+        synchronized (counters) {
+            Counter counter = counters.get(clientId);
+            if(counter!=null) {
+                increment(counter);
+                return;
+            }
+            if(counters.size()<capacity) {
+                counter = new Counter();
+                counter.clientId = clientId;
+                Bucket first = smallest!=null && smallest.count==1 ? smallest : insertAfter(null, 1);
+                attach(counter, first);
+                counters.put(clientId, counter);
+                return;
+            }
+            counter = smallest.first;
+            counters.remove(counter.clientId);
+            counter.clientId = clientId;
+            counters.put(clientId, counter);
+            increment(counter);
+        }
+    }
+
+    /**
+     * Returns the clients with the most requests and their estimated request counts, highest first.
+     * @param count the maximum number of clients to return
+     * @return the hot clients
+     */
+    public List<Map.Entry<String, Long>> top(int count) {
+        List<Map.Entry<String, Long>> top = new ArrayList<>(Math.min(count, capacity));
+        synchronized (counters) {
+            Bucket largest = smallest;
+            while (largest!=null && largest.next!=null) {
+                largest = largest.next;
+            }
+            for (Bucket bucket = largest; bucket!=null && top.size()<count; bucket = bucket.previous) {
+                for (Counter counter = bucket.first; counter!=null && top.size()<count; counter = counter.next) {
+                    top.add(Map.entry(counter.clientId, bucket.count * sampleRate));
+                }
+            }
+        }
+        return top;
+    }
+
+    /** Moves a counter to the bucket of the next count, creating it if needed.*/
+    private void increment(Counter counter) {
+        Bucket bucket = counter.bucket;
+        Bucket next = bucket.next!=null && bucket.next.count==bucket.count + 1 ? bucket.next : insertAfter(bucket, bucket.count + 1);
+        detach(counter);
+        attach(counter, next);
+    }
+
+    /** Links a new bucket after the given one, or first when the given one is null.*/
+    private Bucket insertAfter(Bucket previous, long count) {
+        Bucket bucket = new Bucket(count);
+        bucket.previous = previous;
+        bucket.next = previous!=null ? previous.next : smallest;
+        if(bucket.next!=null) {
+            bucket.next.previous = bucket;
+        }
+        if(previous!=null) {
+            previous.next = bucket;
+        } else {
+            smallest = bucket;
+        }
+        return bucket;
+    }
+
+    private static void attach(Counter counter, Bucket bucket) {
+        counter.bucket = bucket;
+        counter.previous = null;
+        counter.next = bucket.first;
+        if(bucket.first!=null) {
+            bucket.first.previous = counter;
+        }
+        bucket.first = counter;
+    }
+
+    /** Unlinks a counter from its bucket, dropping the bucket once empty.*/
+    private void detach(Counter counter) {
+        Bucket bucket = counter.bucket;
+        if(counter.previous!=null) {
+            counter.previous.next = counter.next;
+        } else {
+            bucket.first = counter.next;
+        }
+        if(counter.next!=null) {
+            counter.next.previous = counter.previous;
+        }
+        if(bucket.first==null) {
+            if(bucket.previous!=null) {
+                bucket.previous.next = bucket.next;
+            } else {
+                smallest = bucket.next;
+            }
+            if(bucket.next!=null) {
+                bucket.next.previous = bucket.previous;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.rateLimiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements a fixed window size rate limiting algorithm in process memory.
+ * It follows the same semantics as {@link FixedWindowRateLimiter}: a window opens with the first allowed request
+ * of a client and lasts {@code windowSize} seconds.
+ *
+ * <p>The state of a client is a single long holding the window start in milliseconds in its upper 40 bits
+ * and the request count in its lower 24 bits. It is updated with one CAS, so decisions take no locks and
+ * allocate nothing once a client has been seen.</p>
+ *
+ * <p>A client whose window has ended is the same as one never seen, so such clients are dropped each time the number
+ * of clients has doubled since the last sweep. Memory then follows the clients active within a window rather than
+ * every client ever seen, for an amortized constant cost per new client.</p>
+ */
+public class InMemoryFixedWindowRateLimiter implements PolicyAwareRateLimiter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    /** The state of a counter dropped by a sweep, which must be looked up again.*/
+    private static final long REMOVED = -1L;
+    private static final int MIN_SWEEP_SIZE = 1024;
+
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    /** The number of clients at which the next sweep runs, or {@link Integer#MAX_VALUE} while one is running.*/
+    private final AtomicInteger sweepSize = new AtomicInteger(MIN_SWEEP_SIZE);
+    /** The longest window decided so far, after which a sweep can be sure a window has ended.*/
+    private final AtomicLong longestWindowMillis;
+    private final long windowSizeInMilliseconds;
+    private final int limit;
+    private final long origin;
+
+    /**
+     * @param windowSize the window size in seconds
+     * @param limit the number of requests allowed per window, at most 16777215
+     */
+    public InMemoryFixedWindowRateLimiter(int windowSize, int limit) {
+        if(limit<0 || limit>COUNT_MASK) {
+            throw new IllegalArgumentException("limit must be between 0 and " + COUNT_MASK + " but was " + limit);
+        }
+        this.windowSizeInMilliseconds = TimeUnit.SECONDS.toMillis(windowSize);
+        this.longestWindowMillis = new AtomicLong(windowSizeInMilliseconds);
+        this.limit = limit;
+        // a start of 0 is then always at least one window in the past
+        this.origin = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(windowSizeInMilliseconds);
+    }
+
+    @Override
+    public boolean isAllowed(String clientId, int permits) {
+        return decide(clientId, permits, limit, windowSizeInMilliseconds, false).allowed();
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        return decide(clientId, permits, limit, windowSizeInMilliseconds, true);
+    }
+
+    /** Decides under the limit and window of the policy, to the millisecond.*/
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits, RateLimitPolicy policy) {
+        if(policy.limit()>COUNT_MASK) {
+            throw new IllegalArgumentException("limit must be at most " + COUNT_MASK + " but was " + policy.limit());
+        }
+        if(policy.windowMillis()>longestWindowMillis.get()) {
+            longestWindowMillis.accumulateAndGet(policy.windowMillis(), Math::max);
+        }
+        return decide(clientId, permits, policy.limit(), policy.windowMillis(), true);
+    }
+
+    /** Takes the decision, building a detailed result only if asked to so that {@link #isAllowed} allocates nothing.*/
+    private RateLimitResult decide(String clientId, int permits, int limit, long windowSizeInMilliseconds, boolean detailed) {
+        if(permits<1) {
+            throw new IllegalArgumentException("permits must be at least 1 but was " + permits);
+        }
+        long currentTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin);
+
+        AtomicLong counter = counters.get(clientId);
+        if(counter==null) {
+            counter = counters.computeIfAbsent(clientId, id -> new AtomicLong());
+            sweepIfGrown(currentTime);
+        }
+
+        while (true) {
+            long state = counter.get();
+            if(state==REMOVED) {
+                counters.remove(clientId, counter);
+                counter = counters.computeIfAbsent(clientId, id -> new AtomicLong());
+                continue;
+            }
+            long windowStart = state >>> COUNT_BITS;
+            long currentCount = state & COUNT_MASK;
+            if(currentCount==0 || currentTime - windowStart >= windowSizeInMilliseconds) {
+                windowStart = currentTime;
+                currentCount = 0;
+            }
+            if(currentCount + permits > limit) {
+                if(!detailed) {
+                    return RateLimitResult.DENIED;
+                }
+                // like the Redis script, a client without a window is told about a whole one
+                long resetAfter = currentCount==0 ? windowSizeInMilliseconds : windowStart + windowSizeInMilliseconds - currentTime;
+                return new RateLimitResult(false, Math.max(0, limit - currentCount), resetAfter, permits>limit ? -1 : resetAfter);
+            }
+            if(counter.compareAndSet(state, windowStart << COUNT_BITS | (currentCount + permits))) {
+                if(!detailed) {
+                    return RateLimitResult.ALLOWED;
+                }
+                return new RateLimitResult(true, limit - currentCount - permits,
+                        windowStart + windowSizeInMilliseconds - currentTime, 0);
+            }
+        }
+    }
+
+    /** Returns the number of clients held in memory.*/
+    int clientCount() {
+        return counters.size();
+    }
+
+    /** Drops the clients whose window has ended, once the number of clients has doubled since the last sweep.*/
+    private void sweepIfGrown(long currentTime) {
+        int size = sweepSize.get();
+        if(counters.size()<size || !sweepSize.compareAndSet(size, Integer.MAX_VALUE)) {
+            return;
+        }
+        long windowSizeInMilliseconds = longestWindowMillis.get();
+        counters.forEach((clientId, counter) -> {
+            long state = counter.get();
+            if(state!=REMOVED && currentTime - (state >>> COUNT_BITS) >= windowSizeInMilliseconds
+                    && counter.compareAndSet(state, REMOVED)) {
+                counters.remove(clientId, counter);
+            }
+        });
+        sweepSize.set(Math.max(MIN_SWEEP_SIZE, 2 * counters.size()));
+    }
+}
@@ -0,0 +1,142 @@
+package com.rateLimiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements token bucket rate limiting algorithm in process memory.
+ * It follows the same semantics as {@link TokenBucketRateLimiter} without any network call.
+ *
+ * <p>The state of a client is a single long: the {@link System#nanoTime()} instant at which its bucket
+ * was (or would have been) empty. The number of tokens is the time elapsed since then multiplied by the
+ * refill rate, capped at the bucket capacity. Consuming tokens moves that instant forward with one CAS,
+ * so decisions take no locks and allocate nothing once a client has been seen.</p>
+ *
+ * <p>A client whose bucket is full again is the same as one never seen, so such clients are dropped each time the
+ * number of clients has doubled since the last sweep. Memory then follows the clients active within the time it takes
+ * to refill a bucket rather than every client ever seen, for an amortized constant cost per new client.</p>
+ */
+public class InMemoryTokenBucketRateLimiter implements PolicyAwareRateLimiter {
+
+    /** The state of a bucket dropped by a sweep, which must be looked up again.*/
+    private static final long REMOVED = Long.MIN_VALUE;
+    private static final int MIN_SWEEP_SIZE = 1024;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    /** The number of clients at which the next sweep runs, or {@link Integer#MAX_VALUE} while one is running.*/
+    private final AtomicInteger sweepSize = new AtomicInteger(MIN_SWEEP_SIZE);
+    /** The longest time to refill a bucket decided so far, after which a sweep can be sure a bucket is full.*/
+    private final AtomicLong longestFullBucketNanos;
+    private final int maxBucketCapacity;
+    private final long nanosPerToken;
+    private final long fullBucketNanos;
+
+    /**
+     * @param maxBucketCapacity the maximum number of tokens in the bucket
+     * @param refillRate the number of tokens added per second, must be positive
+     */
+    public InMemoryTokenBucketRateLimiter(int maxBucketCapacity, double refillRate) {
+        if(refillRate<=0) {
+            throw new IllegalArgumentException("refillRate must be positive but was " + refillRate);
+        }
+        this.maxBucketCapacity = maxBucketCapacity;
+        this.nanosPerToken = Math.max(1L, Math.round(TimeUnit.SECONDS.toNanos(1) / refillRate));
+        this.fullBucketNanos = maxBucketCapacity * nanosPerToken;
+        this.longestFullBucketNanos = new AtomicLong(fullBucketNanos);
+    }
+
+    @Override
+    public boolean isAllowed(String clientId, int permits) {
+        return decide(clientId, permits, maxBucketCapacity, nanosPerToken, false).allowed();
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        return decide(clientId, permits, maxBucketCapacity, nanosPerToken, true);
+    }
+
+    /**
+     * Decides with a bucket of the policy's limit, refilled in full over its window. The state of a client is the
+     * instant its bucket was empty whatever the policy, so a client whose capacity changes keeps the tokens it has.
+     */
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits, RateLimitPolicy policy) {
+        // a limit of 0 still needs a finite refill time, its capacity of 0 then denies every request
+        long nanosPerToken = Math.max(1L, TimeUnit.MILLISECONDS.toNanos(policy.windowMillis()) / Math.max(1, policy.limit()));
+        long fullBucketNanos = policy.limit() * nanosPerToken;
+        if(fullBucketNanos>longestFullBucketNanos.get()) {
+            longestFullBucketNanos.accumulateAndGet(fullBucketNanos, Math::max);
+        }
+        return decide(clientId, permits, policy.limit(), nanosPerToken, true);
+    }
+
+    /** Takes the decision, building a detailed result only if asked to so that {@link #isAllowed} allocates nothing.*/
+    private RateLimitResult decide(String clientId, int permits, int maxBucketCapacity, long nanosPerToken, boolean detailed) {
+        if(permits<1) {
+            throw new IllegalArgumentException("permits must be at least 1 but was " + permits);
+        }
+        long currentTime = System.nanoTime();
+        long fullBucketNanos = maxBucketCapacity * nanosPerToken;
+        long fullAt = currentTime - fullBucketNanos;
+
+        AtomicLong bucket = buckets.get(clientId);
+        if(bucket==null) {
+            bucket = buckets.computeIfAbsent(clientId, id -> new AtomicLong(fullAt));
+            sweepIfGrown(currentTime);
+        }
+
+        while (true) {
+            long emptyAt = bucket.get();
+            if(emptyAt==REMOVED) {
+                buckets.remove(clientId, bucket);
+                bucket = buckets.computeIfAbsent(clientId, id -> new AtomicLong(fullAt));
+                continue;
+            }
+            long nextEmptyAt = Math.max(emptyAt, fullAt) + permits * nanosPerToken;
+            if(nextEmptyAt - currentTime > 0) {
+                if(!detailed) {
+                    return RateLimitResult.DENIED;
+                }
+                long retryAfter = permits>maxBucketCapacity ? -1 : Math.max(1, toMillis(nextEmptyAt - currentTime));
+                return result(false, Math.max(emptyAt, fullAt), currentTime, nanosPerToken, fullBucketNanos, retryAfter);
+            }
+            if(bucket.compareAndSet(emptyAt, nextEmptyAt)) {
+                return detailed ? result(true, nextEmptyAt, currentTime, nanosPerToken, fullBucketNanos, 0) : RateLimitResult.ALLOWED;
+            }
+        }
+    }
+
+    /** Returns the number of clients held in memory.*/
+    int clientCount() {
+        return buckets.size();
+    }
+
+    /** Drops the clients whose bucket is full, once the number of clients has doubled since the last sweep.*/
+    private void sweepIfGrown(long currentTime) {
+        int size = sweepSize.get();
+        if(buckets.size()<size || !sweepSize.compareAndSet(size, Integer.MAX_VALUE)) {
+            return;
+        }
+        long fullAt = currentTime - longestFullBucketNanos.get();
+        buckets.forEach((clientId, bucket) -> {
+            long emptyAt = bucket.get();
+            if(emptyAt!=REMOVED && emptyAt - fullAt <= 0 && bucket.compareAndSet(emptyAt, REMOVED)) {
+                buckets.remove(clientId, bucket);
+            }
+        });
+        sweepSize.set(Math.max(MIN_SWEEP_SIZE, 2 * buckets.size()));
+    }
+
+    private static RateLimitResult result(boolean allowed, long emptyAt, long currentTime, long nanosPerToken,
+                                          long fullBucketNanos, long retryAfter) {
+        long remaining = Math.max(0, (currentTime - emptyAt) / nanosPerToken);
+        long resetAfter = Math.max(0, toMillis(emptyAt + fullBucketNanos - currentTime));
+        return new RateLimitResult(allowed, remaining, resetAfter, retryAfter);
+    }
+
+    private static long toMillis(long nanos) {
+        return (nanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,243 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.UnifiedJedis;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class implements a two-tier token bucket on top of the shared Redis bucket of {@link TokenBucketRateLimiter}.
+ *
+ * <p>Instead of spending one round trip per request, each instance leases up to {@code leaseSize} tokens of a client
+ * in one atomic call and serves decisions from that lease in memory. The lease is renewed in the background once
+ * half of it is used, and tokens left unused for {@code maxStaleness} or at {@link #close()} are returned to Redis.</p>
+ *
+ * <p>Tokens are always taken from the shared bucket before they are used, so the global limit is never exceeded.
+ * The trade-off is that up to {@code leaseSize} tokens per client and instance may sit idle in a lease while another
+ * instance is denied, for at most {@code maxStaleness}.</p>
+ *
+ * <p>Instances are built with {@link #create(UnifiedJedis, int, double, int, Duration)}, which starts the background
+ * return of stale leases once the instance is fully constructed.</p>
+ */
+public class LeasingTokenBucketRateLimiter implements RateLimiter {
+
+    /** Takes up to ARGV[3] tokens from the bucket and returns how many were granted.*/
+    private static final RedisScript LEASE_SCRIPT = new RedisScript(
+            TokenBucketRateLimiter.LOAD_FROM_KEYS + TokenBucketRateLimiter.REFILL_SCRIPT + """
+            local granted = math.min(tokenCount, permits)
+            tokenCount = tokenCount - granted
+            """ + TokenBucketRateLimiter.STORE_TO_KEYS + "return granted\n");
+
+    /** Puts ARGV[3] unused tokens back into the bucket, never above its capacity.*/
+    private static final RedisScript RETURN_SCRIPT = new RedisScript(
+            TokenBucketRateLimiter.LOAD_FROM_KEYS + TokenBucketRateLimiter.REFILL_SCRIPT + """
+            tokenCount = math.min(maxBucketCapacity, tokenCount + permits)
+            """ + TokenBucketRateLimiter.STORE_TO_KEYS + "return tokenCount\n");
+
+    private final UnifiedJedis jedis;
+    private final TokenBucketRateLimiter bucket;
+    private final int leaseSize;
+    private final long maxStalenessNanos;
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private LeasingTokenBucketRateLimiter(UnifiedJedis jedis, int maxBucketCapacity, double refillRate,
+                                          int leaseSize, Duration maxStaleness) {
+        if(leaseSize<1) {
+            throw new IllegalArgumentException("leaseSize must be at least 1 but was " + leaseSize);
+        }
+        this.jedis = jedis;
+        this.bucket = new TokenBucketRateLimiter(jedis, maxBucketCapacity, refillRate);
+        this.leaseSize = leaseSize;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("rate-limiter-lease").daemon().factory());
+    }
+
+    /**
+     * Builds a limiter and starts returning the leases left unused for {@code maxStaleness}.
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param maxBucketCapacity the maximum number of tokens in the shared bucket
+     * @param refillRate the number of tokens added to the shared bucket per second
+     * @param leaseSize the number of tokens leased per round trip
+     * @param maxStaleness how long leased tokens may be used before the unused ones go back to the shared bucket
+     */
+    public static LeasingTokenBucketRateLimiter create(UnifiedJedis jedis, int maxBucketCapacity, double refillRate,
+                                                       int leaseSize, Duration maxStaleness) {
+        LeasingTokenBucketRateLimiter rateLimiter =
+                new LeasingTokenBucketRateLimiter(jedis, maxBucketCapacity, refillRate, leaseSize, maxStaleness);
+        long sweepInterval = Math.max(1L, rateLimiter.maxStalenessNanos / 2);
+        rateLimiter.scheduler.scheduleWithFixedDelay(rateLimiter::returnStaleLeases, sweepInterval, sweepInterval,
+                TimeUnit.NANOSECONDS);
+        return rateLimiter;
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        if(permits<1) {
+            throw new IllegalArgumentException("permits must be at least 1 but was " + permits);
+        }
+        while (true) {
+            Lease lease = leases.get(clientId);
+            if(lease==null) {
+                lease = leases.computeIfAbsent(clientId, id -> new Lease());
+            }
+
+            long currentTime = System.nanoTime();
+            if(lease.isStale(currentTime)) {
+                returnTokens(clientId, lease.tokens.getAndSet(0));
+            } else if(lease.tryTake(permits)) {
+                renewIfLow(clientId, lease);
+                return RateLimitResult.ALLOWED;
+            }
+
+            // the lease cannot cover this request: top it up while other callers of this client wait
+            lease.lock.lock();
+            try {
+                if(lease.retired) {
+                    // the sweeper removed this lease meanwhile: use the one now in the map
+                    continue;
+                }
+                if(lease.tryTake(permits)) {
+                    return RateLimitResult.ALLOWED;
+                }
+                lease.add(lease(clientId, Math.max(leaseSize, permits)), System.nanoTime() + maxStalenessNanos);
+                if(lease.tryTake(permits)) {
+                    renewIfLow(clientId, lease);
+                    return RateLimitResult.ALLOWED;
+                }
+                return RateLimitResult.DENIED;
+            } finally {
+                lease.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops background renewal and returns every unused leased token to the shared bucket. Renewals already under way
+     * find their lease retired and return what they were granted.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        leases.forEach((clientId, lease) -> {
+            lease.lock.lock();
+            try {
+                lease.retired = true;
+                returnTokens(clientId, lease.tokens.getAndSet(0));
+            } finally {
+                lease.lock.unlock();
+            }
+        });
+        leases.clear();
+    }
+
+    private void renewIfLow(String clientId, Lease lease) {
+        if(lease.tokens.get()*2<leaseSize && lease.renewing.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    try {
+                        long granted = lease(clientId, leaseSize);
+                        boolean retired;
+                        lease.lock.lock();
+                        try {
+                            retired = lease.retired;
+                            if(!retired) {
+                                lease.add(granted, System.nanoTime() + maxStalenessNanos);
+                            }
+                        } finally {
+                            lease.lock.unlock();
+                        }
+                        if(retired) {
+                            returnTokens(clientId, granted);
+                        }
+                    } catch (RuntimeException e) {
+                        // the next request that finds the lease empty tops it up synchronously
+                    } finally {
+                        lease.renewing.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                lease.renewing.set(false);
+            }
+        }
+    }
+
+    private void returnStaleLeases() {
+        long currentTime = System.nanoTime();
+        leases.forEach((clientId, lease) -> {
+            // a lease being topped up is not stale for long, and is retired by a later sweep otherwise
+            if(lease.isStale(currentTime) && lease.lock.tryLock()) {
+                try {
+                    if(lease.isStale(currentTime)) {
+                        lease.retired = true;
+                        leases.remove(clientId, lease);
+                        returnTokens(clientId, lease.tokens.getAndSet(0));
+                    }
+                } catch (RuntimeException e) {
+                    // the tokens are lost for this lease, which can only under-admit
+                } finally {
+                    lease.lock.unlock();
+                }
+            }
+        });
+    }
+
+    private void returnTokens(String clientId, long unused) {
+        if(unused>0) {
+            eval(RETURN_SCRIPT, clientId, unused);
+        }
+    }
+
+    private long lease(String clientId, long requested) {
+        return (Long) eval(LEASE_SCRIPT, clientId, requested);
+    }
+
+    private Object eval(RedisScript script, String clientId, long tokens) {
+        long currentTimeMillis = System.currentTimeMillis();
+        return script.eval(jedis, bucket.encodeKeys(clientId, currentTimeMillis),
+                bucket.encodeArgs(Math.toIntExact(tokens), currentTimeMillis));
+    }
+
+    /**
+     * The tokens of one client currently held by this instance. Tokens are only added under the lock, and not once
+     * the lease is retired, so a retired lease stays empty and its callers move to the next lease of the client.
+     */
+    private static final class Lease {
+
+        private final AtomicLong tokens = new AtomicLong();
+        private final AtomicBoolean renewing = new AtomicBoolean();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long expiresAt = System.nanoTime();
+        /** Set under the lock when the lease is removed from the map.*/
+        private volatile boolean retired;
+
+        boolean tryTake(int permits) {
+            while (true) {
+                long available = tokens.get();
+                if(available<permits) {
+                    return false;
+                }
+                if(tokens.compareAndSet(available, available - permits)) {
+                    return true;
+                }
+            }
+        }
+
+        void add(long granted, long newExpiresAt) {
+            expiresAt = newExpiresAt;
+            tokens.addAndGet(granted);
+        }
+
+        boolean isStale(long currentTime) {
+            return currentTime - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.rateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gathers asynchronous decisions from any number of threads and sends them to Redis as one pipeline.
+ * A single daemon thread flushes once {@code maxBatchSize} requests are waiting, or {@code lingerNanos} after
+ * the first request of a batch arrived, whichever comes first.
+ *
+ * <p>Futures are completed on the dispatcher thread, so dependent stages should use the {@code *Async}
+ * methods of {@link CompletableFuture} if they do more than a little work.</p>
+ */
+final class PipelineDispatcher implements AutoCloseable {
+
+    /**
+     * Decides a batch of requests with one pipeline, returning one result per request in order.
+     * The policies are null when every request of the batch is under the limit of the limiter.
+     */
+    interface BatchDecider {
+        RateLimitResult[] decide(List<String> clientIds, int[] permits, RateLimitPolicy[] policies);
+    }
+
+    private record Request(String clientId, int permits, RateLimitPolicy policy, CompletableFuture<RateLimitResult> future) {
+    }
+
+    private static final int CLOSED = Integer.MIN_VALUE;
+
+    private final BatchDecider decider;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+    /** The number of submitted requests not yet taken by the flusher, with {@link #CLOSED} set once closed.*/
+    private final AtomicInteger state = new AtomicInteger();
+    private final Thread flusher;
+
+    PipelineDispatcher(BatchDecider decider, int maxBatchSize, long lingerNanos) {
+        this.decider = decider;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = lingerNanos;
+        this.flusher = Thread.ofPlatform().name("rate-limiter-dispatcher").daemon().start(this::run);
+    }
+
+    /** Queues a request under the given policy, or under the limit of the limiter when it is null.*/
+    CompletableFuture<RateLimitResult> submit(String clientId, int permits, RateLimitPolicy policy) {
+        CompletableFuture<RateLimitResult> future = new CompletableFuture<>();
+        // reserve a place before enqueueing, so that the flusher cannot stop while the request is on its way
+        int current;
+        do {
+            current = state.get();
+            if((current & CLOSED)!=0) {
+                future.completeExceptionally(new IllegalStateException("Rate limiter is closed"));
+                return future;
+            }
+        } while (!state.compareAndSet(current, current + 1));
+        queue.add(new Request(clientId, permits, policy, future));
+        int waiting = current + 1;
+        if(waiting==1 || waiting>=maxBatchSize) {
+            LockSupport.unpark(flusher);
+        }
+        return future;
+    }
+
+    /** Flushes the requests already submitted, then stops the dispatcher thread.*/
+    @Override
+    public void close() {
+        state.getAndUpdate(current -> current | CLOSED);
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        int current;
+        while ((current = state.get())!=CLOSED) {
+            int pending = current & ~CLOSED;
+            boolean closed = (current & CLOSED)!=0;
+            if(pending==0) {
+                LockSupport.park(this);
+                continue;
+            }
+            if(!closed && pending<maxBatchSize && lingerNanos>0) {
+                LockSupport.parkNanos(this, lingerNanos);
+            }
+            Request request;
+            while (batch.size()<maxBatchSize && (request = queue.poll())!=null) {
+                state.decrementAndGet();
+                batch.add(request);
+            }
+            if(batch.isEmpty()) {
+                // a submitter reserved its place but has not enqueued yet
+                Thread.onSpinWait();
+                continue;
+            }
+            flush(batch);
+            batch.clear();
+        }
+        Request request;
+        while ((request = queue.poll())!=null) {
+            request.future().completeExceptionally(new IllegalStateException("Rate limiter is closed"));
+        }
+    }
+
+    private void flush(List<Request> batch) {
+        List<String> clientIds = new ArrayList<>(batch.size());
+        int[] permits = new int[batch.size()];
+        RateLimitPolicy[] policies = null;
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            clientIds.add(request.clientId());
+            permits[i] = request.permits();
+            if(request.policy()!=null) {
+                if(policies==null) {
+                    policies = new RateLimitPolicy[batch.size()];
+                }
+                policies[i] = request.policy();
+            }
+        }
+        RateLimitResult[] results;
+        try {
+            results = decider.decide(clientIds, permits, policies);
+        } catch (RuntimeException e) {
+            batch.forEach(request -> request.future().completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future().complete(results[i]);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.rateLimiter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A rate limiter that can take the limit and window of each request from a {@link RateLimitPolicy} rather than from
+ * the limit it was built with, so that one limiter serves clients of different limits, see {@link PolicyRateLimiter}.
+ */
+public interface PolicyAwareRateLimiter extends RateLimiter {
+
+    /**
+     * Tries to consume the given number of permits for a client under the given policy.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits to consume, at least 1
+     * @param policy the limit and window to enforce for this request
+     * @return the decision for this request
+     */
+    RateLimitResult tryAcquire(String clientId, int permits, RateLimitPolicy policy);
+
+    /**
+     * Returns whether requests can take a policy. This is false only for wrappers around a limiter that cannot, which
+     * {@link PolicyRateLimiter} rejects when it is built.
+     */
+    default boolean supportsPolicies() {
+        return true;
+    }
+
+    /**
+     * Decides for several clients at once, each charged its own number of permits under its own policy.
+     * @param permitsByClientId the number of permits to consume per client, each at least 1
+     * @param policies returns the policy of a client
+     * @return the decision for each client, in iteration order of the map
+     */
+    default Map<String, RateLimitResult> decideAll(Map<String, Integer> permitsByClientId,
+                                                   Function<String, RateLimitPolicy> policies) {
+        Map<String, RateLimitResult> results = new LinkedHashMap<>();
+        permitsByClientId.forEach((clientId, permits) ->
+                results.put(clientId, tryAcquire(clientId, permits, policies.apply(clientId))));
+        return results;
+    }
+
+    /**
+     * Tries to consume the given number of permits for a client under the given policy without blocking the calling
+     * thread. Limiters that decide in memory complete the future before returning it.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits to consume, at least 1
+     * @param policy the limit and window to enforce for this request
+     * @return a future completed with the decision for this request
+     */
+    default CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits, RateLimitPolicy policy) {
+        try {
+            return CompletableFuture.completedFuture(tryAcquire(clientId, permits, policy));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
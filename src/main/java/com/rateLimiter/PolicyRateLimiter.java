@@ -0,0 +1,90 @@
+package com.rateLimiter;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies to each client the policy found in a {@link PolicyStore}, or a default policy, so that tiers and customers
+ * get their own limits and the limits can change at runtime.
+ *
+ * <p>Every client is decided by one shared {@link PolicyAwareRateLimiter}, which is passed the policy with each request
+ * through {@link PolicyAwareRateLimiter#tryAcquire(String, int, RateLimitPolicy)}: the Redis limiters send the limit and window as
+ * script arguments, so any number of policies costs no more limiters, threads or connections than one. A client
+ * whose limit changes keeps its counters and is held to the new limit from its next request; the window limiters
+ * count afresh when its window changes.</p>
+ *
+ * <p>Wrap stores that make a round trip in a {@link CachingPolicyStore}, so that the common case adds no round trip
+ * to the decision.</p>
+ */
+public class PolicyRateLimiter implements RateLimiter {
+
+    private final PolicyStore store;
+    private final RateLimitPolicy defaultPolicy;
+    private final PolicyAwareRateLimiter rateLimiter;
+
+    /**
+     * @param store where the policies of clients are looked up
+     * @param defaultPolicy the policy of clients without one in the store
+     * @param rateLimiter the limiter deciding every client under its policy, e.g. a {@link GcraRateLimiter}
+     * @throws IllegalArgumentException if the limiter wraps one that cannot take a policy per request
+     */
+    public PolicyRateLimiter(PolicyStore store, RateLimitPolicy defaultPolicy, PolicyAwareRateLimiter rateLimiter) {
+        if(!rateLimiter.supportsPolicies()) {
+            throw new IllegalArgumentException("The limiter must take a policy per request but wraps one that cannot");
+        }
+        this.store = store;
+        this.defaultPolicy = defaultPolicy;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Returns the policy applied to a client.
+     * @param clientId the unique id of the client
+     */
+    public RateLimitPolicy policy(String clientId) {
+        RateLimitPolicy policy = store.load(clientId);
+        return policy!=null ? policy : defaultPolicy;
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String clientId, int permits) {
+        return rateLimiter.tryAcquire(clientId, permits, policy(clientId));
+    }
+
+    @Override
+    public Map<String, RateLimitResult> decideAll(Collection<String> clientIds) {
+        Map<String, Integer> permitsByClientId = new LinkedHashMap<>();
+        for (String clientId : new LinkedHashSet<>(clientIds)) {
+            permitsByClientId.put(clientId, 1);
+        }
+        return decideAll(permitsByClientId);
+    }
+
+    /** Decides the clients of all policies at once, in one pipelined flush when the shared limiter is a Redis one.*/
+    @Override
+    public Map<String, RateLimitResult> decideAll(Map<String, Integer> permitsByClientId) {
+        return rateLimiter.decideAll(permitsByClientId, this::policy);
+    }
+
+    @Override
+    public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits) {
+        try {
+            return rateLimiter.tryAcquireAsync(clientId, permits, policy(clientId));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Closes the shared limiter and the policy store.*/
+    @Override
+    public void close() {
+        try {
+            rateLimiter.close();
+        } finally {
+            store.close();
+        }
+    }
+}
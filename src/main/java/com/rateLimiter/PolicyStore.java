@@ -0,0 +1,30 @@
+package com.rateLimiter;
+
+import java.util.function.Consumer;
+
+/**
+ * Where the policies of clients are kept, looked up by {@link PolicyRateLimiter} for every decision.
+ * Stores that make a round trip should be wrapped in a {@link CachingPolicyStore}.
+ */
+public interface PolicyStore extends AutoCloseable {
+
+    /**
+     * Returns the policy of a client.
+     * @param clientId the unique id of the client
+     * @return the policy, or null if the client has none and gets the default one
+     */
+    RateLimitPolicy load(String clientId);
+
+    /**
+     * Sets the callback told when policies change, with the client id or null when any policy may have changed.
+     * Stores that cannot detect changes never call it.
+     * @param listener the callback
+     */
+    default void setChangeListener(Consumer<String> listener) {
+    }
+
+    /** Releases the connections and threads of the store.*/
+    @Override
+    default void close() {
+    }
+}
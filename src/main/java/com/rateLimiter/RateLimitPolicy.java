@@ -0,0 +1,98 @@
+package com.rateLimiter;
+
+import java.time.Duration;
+
+/**
+ * The limit of a client: {@code limit} permits per {@code windowMillis}. For a window limiter this is the limit
+ * per window; for a token bucket it is the capacity, refilled in full over the window.
+ *
+ * <p>Policies are written {@code <limit>/<window>}, the window in milliseconds or with a unit among
+ * {@code ms}, {@code s}, {@code m} and {@code h}, e.g. {@code 100/60s}.</p>
+ *
+ * @param limit the number of permits per window, 0 to deny every request
+ * @param windowMillis the window in milliseconds
+ */
+public record RateLimitPolicy(int limit, long windowMillis) {
+
+    public RateLimitPolicy {
+        if(limit<0) {
+            throw new IllegalArgumentException("limit must not be negative but was " + limit);
+        }
+        if(windowMillis<1) {
+            throw new IllegalArgumentException("windowMillis must be at least 1 but was " + windowMillis);
+        }
+    }
+
+    /**
+     * @param limit the number of permits per window
+     * @param window the window
+     */
+    public static RateLimitPolicy of(int limit, Duration window) {
+        return new RateLimitPolicy(limit, window.toMillis());
+    }
+
+    /**
+     * @param maxBucketCapacity the maximum number of permits in a burst
+     * @param refillRate the number of permits added per second, must be positive
+     * @throws IllegalArgumentException if the bucket takes too long to fill for its window to fit in a long
+     */
+    public static RateLimitPolicy tokenBucket(int maxBucketCapacity, double refillRate) {
+        if(refillRate<=0) {
+            throw new IllegalArgumentException("refillRate must be positive but was " + refillRate);
+        }
+        double windowMillis = maxBucketCapacity * 1000.0 / refillRate;
+        if(!(windowMillis<Long.MAX_VALUE)) {
+            throw new IllegalArgumentException("A bucket of " + maxBucketCapacity + " permits refilled at " + refillRate
+                    + " per second takes too long to fill");
+        }
+        return new RateLimitPolicy(maxBucketCapacity, Math.max(1L, Math.round(windowMillis)));
+    }
+
+    /**
+     * Parses a policy written {@code <limit>/<window>}, e.g. {@code 100/60s}.
+     * @param value the policy
+     * @throws IllegalArgumentException if the value is not a policy
+     */
+    public static RateLimitPolicy parse(String value) {
+        int slash = value.indexOf('/');
+        if(slash<0) {
+            throw new IllegalArgumentException("Policy should be written <limit>/<window> but was " + value);
+        }
+        String window = value.substring(slash + 1).trim();
+        int unitStart = window.length();
+        while (unitStart > 0 && Character.isLetter(window.charAt(unitStart - 1))) {
+            unitStart--;
+        }
+        long multiplier = switch (window.substring(unitStart)) {
+            case "", "ms" -> 1;
+            case "s" -> 1_000;
+            case "m" -> 60_000;
+            case "h" -> 3_600_000;
+            default -> throw new IllegalArgumentException("Unknown unit in policy " + value);
+        };
+        try {
+            return new RateLimitPolicy(Integer.parseInt(value.substring(0, slash).trim()),
+                    Long.parseLong(window.substring(0, unitStart)) * multiplier);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Policy should be written <limit>/<window> but was " + value, e);
+        }
+    }
+
+    /**
+     * Returns the window in whole seconds, rounded up, for the limiters configured in seconds.
+     * @throws ArithmeticException if the window is longer than {@link Integer#MAX_VALUE} seconds
+     */
+    public int windowSeconds() {
+        return Math.toIntExact((windowMillis - 1) / 1000 + 1);
+    }
+
+    /** Returns the number of permits added per second when the policy configures a token bucket.*/
+    public double refillRate() {
+        return limit * 1000.0 / windowMillis;
+    }
+
+    /** Returns the policy written {@code <limit>/<window>ms}, as read by {@link #parse(String)}.*/
+    public String format() {
+        return limit + "/" + windowMillis + "ms";
+    }
+}
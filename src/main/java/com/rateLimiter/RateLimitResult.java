@@ -0,0 +1,33 @@
+package com.rateLimiter;
+
+/**
+ * The decision taken by a {@link RateLimiter} for one request, with what a caller needs for
+ * {@code X-RateLimit-Remaining}, {@code X-RateLimit-Reset} and {@code Retry-After} headers.
+ * All of it comes from the same server interaction as the decision itself.
+ * @param allowed true if the request is allowed
+ * @param remaining the permits left after this request, or -1 if the limiter does not know
+ * @param resetAfterMillis the milliseconds until the client is back to its full limit if no other request arrives,
+ *                         or -1 if the limiter does not know or the limit never resets
+ * @param retryAfterMillis for a denied request, the milliseconds until the same request could be allowed if no other
+ *                         request arrives in between, 0 if unknown, or -1 if it can never be allowed because it asks
+ *                         for more permits than the limit; always 0 for an allowed request
+ */
+public record RateLimitResult(boolean allowed, long remaining, long resetAfterMillis, long retryAfterMillis) {
+
+    static final RateLimitResult ALLOWED = new RateLimitResult(true, -1, -1, 0);
+    static final RateLimitResult DENIED = new RateLimitResult(false, -1, -1, 0);
+
+    /** Returns {@link #resetAfterMillis()} rounded up to whole seconds, as used by {@code X-RateLimit-Reset}.*/
+    public long resetAfterSeconds() {
+        return toSeconds(resetAfterMillis);
+    }
+
+    /** Returns {@link #retryAfterMillis()} rounded up to whole seconds, as used by {@code Retry-After}.*/
+    public long retryAfterSeconds() {
+        return toSeconds(retryAfterMillis);
+    }
+
+    private static long toSeconds(long millis) {
+        return millis<0 ? millis : (millis + 999) / 1000;
+    }
+}
@@ -0,0 +1,119 @@
+package com.rateLimiter;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Common contract of all rate limiters.
+ * Implementations are thread-safe, so one shared instance can serve every request thread.
+ */
+public interface RateLimiter extends AutoCloseable {
+
+    /**
+     * Checks if a client is within their allowed request limit.
+     * If yes, the request is allowed and one permit is consumed. If not, the request is blocked.
+     * @param clientId the unique id of the client
+     * @return True if request is allowed. False if not.
+     */
+    default boolean isAllowed(String clientId) {
+        return isAllowed(clientId, 1);
+    }
+
+    /**
+     * Checks if a client can consume the given number of permits.
+     * Either all permits are consumed or none are.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits to consume, at least 1
+     * @return True if request is allowed. False if not.
+     */
+    default boolean isAllowed(String clientId, int permits) {
+        return tryAcquire(clientId, permits).allowed();
+    }
+
+    /**
+     * Tries to consume one permit for a client and reports the decision with the remaining quota,
+     * the reset time and the retry time.
+     * @param clientId the unique id of the client
+     * @return the decision for this request
+     */
+    default RateLimitResult tryAcquire(String clientId) {
+        return tryAcquire(clientId, 1);
+    }
+
+    /**
+     * Tries to consume the given number of permits for a client and reports the decision.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits to consume, at least 1
+     * @return the decision for this request
+     */
+    RateLimitResult tryAcquire(String clientId, int permits);
+
+    /**
+     * Checks several clients at once, consuming one permit from each client that is allowed.
+     * @param clientIds the unique ids of the clients, each distinct id is checked once
+     * @return whether each client's request is allowed, in iteration order of the ids
+     */
+    default Map<String, Boolean> isAllowed(Collection<String> clientIds) {
+        Map<String, Boolean> allowed = new LinkedHashMap<>();
+        decideAll(clientIds).forEach((clientId, result) -> allowed.put(clientId, result.allowed()));
+        return allowed;
+    }
+
+    /**
+     * Decides for several clients at once, consuming one permit from each client that is allowed.
+     * Each client keeps its own independent limit, exactly as with {@link #tryAcquire(String, int)}.
+     * @param clientIds the unique ids of the clients, each distinct id is checked once
+     * @return the decision for each client, in iteration order of the ids
+     */
+    default Map<String, RateLimitResult> decideAll(Collection<String> clientIds) {
+        Map<String, RateLimitResult> results = new LinkedHashMap<>();
+        for (String clientId : new LinkedHashSet<>(clientIds)) {
+            results.put(clientId, tryAcquire(clientId, 1));
+        }
+        return results;
+    }
+
+    /**
+     * Decides for several clients at once, each charged its own number of permits, for example the item count of a
+     * bulk request. Either all permits of a client are consumed or none are.
+     * @param permitsByClientId the number of permits to consume per client, each at least 1
+     * @return the decision for each client, in iteration order of the map
+     */
+    default Map<String, RateLimitResult> decideAll(Map<String, Integer> permitsByClientId) {
+        Map<String, RateLimitResult> results = new LinkedHashMap<>();
+        permitsByClientId.forEach((clientId, permits) -> results.put(clientId, tryAcquire(clientId, permits)));
+        return results;
+    }
+
+    /**
+     * Checks if a client is within their allowed request limit without blocking the calling thread.
+     * @param clientId the unique id of the client
+     * @return a future completed with true if the request is allowed, false if not
+     */
+    default CompletableFuture<Boolean> isAllowedAsync(String clientId) {
+        return tryAcquireAsync(clientId, 1).thenApply(RateLimitResult::allowed);
+    }
+
+    /**
+     * Tries to consume the given number of permits for a client without blocking the calling thread.
+     * Limiters that decide in memory complete the future before returning it.
+     * @param clientId the unique id of the client
+     * @param permits the number of permits to consume, at least 1
+     * @return a future completed with the decision for this request
+     */
+    default CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits) {
+        try {
+            return CompletableFuture.completedFuture(tryAcquire(clientId, permits));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Releases the resources held by this limiter, such as background threads. The Redis client is not closed.*/
+    @Override
+    default void close() {
+    }
+}
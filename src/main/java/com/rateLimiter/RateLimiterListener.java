@@ -0,0 +1,62 @@
+package com.rateLimiter;
+
+/**
+ * Receives the decisions, Redis call latencies and failures of a rate limiter.
+ * Callbacks run on the calling thread, so implementations must be thread-safe and cheap.
+ * When no listener is set the limiter skips timing and callbacks entirely.
+ */
+public interface RateLimiterListener {
+
+    /** The listener used when none is set, which records nothing.*/
+    RateLimiterListener NONE = new RateLimiterListener() {
+    };
+
+    /** Operation name of a single decision, see {@link RateLimiter#tryAcquire(String, int)}.*/
+    String TRY_ACQUIRE = "tryAcquire";
+
+    /** Operation name of a pipelined batch of decisions, see {@link RateLimiter#decideAll(java.util.Collection)}.*/
+    String DECIDE_ALL = "decideAll";
+
+    /** Operation name of one pipeline flushed for asynchronous decisions, see {@link RateLimiter#tryAcquireAsync(String, int)}.*/
+    String ASYNC_FLUSH = "asyncFlush";
+
+    /** Fallback reason when the wrapped limiter did not answer within the latency budget, see {@link FallbackRateLimiter}.*/
+    String FALLBACK_TIMEOUT = "timeout";
+
+    /** Fallback reason when the wrapped limiter failed, see {@link FallbackRateLimiter}.*/
+    String FALLBACK_ERROR = "error";
+
+    /** Fallback reason when the wrapped limiter was not called because the circuit was open, see {@link FallbackRateLimiter}.*/
+    String FALLBACK_CIRCUIT_OPEN = "circuitOpen";
+
+    /**
+     * Called once per client decision.
+     * @param clientId the unique id of the client
+     * @param allowed true if the request was allowed
+     */
+    default void onDecision(String clientId, boolean allowed) {
+    }
+
+    /**
+     * Called after every successful call to Redis.
+     * @param operation the operation name, such as {@link #TRY_ACQUIRE}
+     * @param latencyNanos the time the call took in nanoseconds
+     */
+    default void onCall(String operation, long latencyNanos) {
+    }
+
+    /**
+     * Called when an operation fails, before the exception is rethrown to the caller.
+     * @param operation the operation name, such as {@link #TRY_ACQUIRE}
+     * @param exception the failure
+     */
+    default void onError(String operation, RuntimeException exception) {
+    }
+
+    /**
+     * Called when a decision is taken by the fallback limiter instead of the wrapped one.
+     * @param reason why the fallback was used, such as {@link #FALLBACK_TIMEOUT}
+     */
+    default void onFallback(String reason) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.rateLimiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link RateLimiterListener} that counts decisions and failures, keeps a {@link LatencyHistogram} per operation
+ * and optionally tracks hot clients. Use one instance per limiter to get per-limiter numbers.
+ */
+public class RateLimiterMetrics implements RateLimiterListener {
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> fallbacks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final HotClientTracker hotClients;
+
+    /** Creates metrics without hot client tracking.*/
+    public RateLimiterMetrics() {
+        this(null);
+    }
+
+    /** @param hotClients the tracker of hot clients, or null to not track them*/
+    public RateLimiterMetrics(HotClientTracker hotClients) {
+        this.hotClients = hotClients;
+    }
+
+    @Override
+    public void onDecision(String clientId, boolean allowed) {
+        (allowed ? this.allowed : denied).increment();
+        if(hotClients!=null) {
+            hotClients.record(clientId);
+        }
+    }
+
+    @Override
+    public void onCall(String operation, long latencyNanos) {
+        latency(operation).record(latencyNanos);
+    }
+
+    @Override
+    public void onError(String operation, RuntimeException exception) {
+        counter(errors, operation).increment();
+    }
+
+    @Override
+    public void onFallback(String reason) {
+        counter(fallbacks, reason).increment();
+    }
+
+    /** Returns the number of allowed requests.*/
+    public long allowedCount() {
+        return allowed.sum();
+    }
+
+    /** Returns the number of denied requests.*/
+    public long deniedCount() {
+        return denied.sum();
+    }
+
+    /** Returns the number of failures of an operation, such as {@link #TRY_ACQUIRE}.*/
+    public long errorCount(String operation) {
+        LongAdder counter = errors.get(operation);
+        return counter!=null ? counter.sum() : 0;
+    }
+
+    /** Returns the number of decisions taken by a fallback limiter for a reason, such as {@link #FALLBACK_TIMEOUT}.*/
+    public long fallbackCount(String reason) {
+        LongAdder counter = fallbacks.get(reason);
+        return counter!=null ? counter.sum() : 0;
+    }
+
+    /** Returns the latency histogram of an operation, such as {@link #TRY_ACQUIRE}.*/
+    public LatencyHistogram latency(String operation) {
+        LatencyHistogram histogram = latencies.get(operation);
+        if(histogram==null) {
+            histogram = latencies.computeIfAbsent(operation, name -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    /** Returns the tracker of hot clients, or null if they are not tracked.*/
+    public HotClientTracker hotClients() {
+        return hotClients;
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<String, LongAdder> counters, String name) {
+        LongAdder counter = counters.get(name);
+        if(counter==null) {
+            counter = counters.computeIfAbsent(name, key -> new LongAdder());
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,130 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps policies in one Redis hash. The field of a client holds either its policy, e.g. {@code 100/60s}, or the name
+ * of its tier, whose policy is in the field {@code tier.<name>}:
+ * <pre>
+ * HSET rate-limit:policies tier.gold 10000/1m customer42 gold customer7 50/1s
+ * </pre>
+ *
+ * <p>Changes made through {@link #put(String, String)} and {@link #remove(String)} are published on the channel
+ * {@code <key>:changes}, which every store with a change listener subscribes to, so caches in all instances drop the
+ * changed policies at once. After a lost subscription every policy is reported changed, as changes may have been missed.</p>
+ */
+public class RedisPolicyStore implements PolicyStore {
+
+    static final String TIER_PREFIX = "tier.";
+    private static final long RESUBSCRIBE_DELAY_MILLIS = 1_000;
+
+    private final UnifiedJedis jedis;
+    private final String key;
+    private final String channel;
+    private volatile JedisPubSub subscription;
+    private volatile Thread subscriber;
+    private volatile boolean closed;
+
+    /**
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param key the key of the hash, e.g. {@code rate-limit:policies}
+     */
+    public RedisPolicyStore(UnifiedJedis jedis, String key) {
+        this.jedis = jedis;
+        this.key = key;
+        this.channel = key + ":changes";
+    }
+
+    @Override
+    public RateLimitPolicy load(String clientId) {
+        String value = jedis.hget(key, clientId);
+        if(value==null) {
+            return null;
+        }
+        if(value.indexOf('/')<0) {
+            value = jedis.hget(key, TIER_PREFIX + value);
+            if(value==null) {
+                return null;
+            }
+        }
+        return RateLimitPolicy.parse(value);
+    }
+
+    /**
+     * Sets the policy of a client, or of a tier when the field is {@code tier.<name>}, and tells every instance.
+     * @param field the client id or {@code tier.<name>}
+     * @param policyOrTier a policy such as {@code 100/60s}, or for a client the name of its tier
+     */
+    public void put(String field, String policyOrTier) {
+        if(policyOrTier.indexOf('/')>=0) {
+            RateLimitPolicy.parse(policyOrTier);
+        }
+        jedis.hset(key, field, policyOrTier);
+        jedis.publish(channel, field);
+    }
+
+    /**
+     * Removes the policy of a client or a tier and tells every instance.
+     * @param field the client id or {@code tier.<name>}
+     */
+    public void remove(String field) {
+        jedis.hdel(key, field);
+        jedis.publish(channel, field);
+    }
+
+    /** Subscribes to the changes on a daemon thread, which receives a client id or null for a tier change.*/
+    @Override
+    public synchronized void setChangeListener(Consumer<String> listener) {
+        if(subscriber!=null) {
+            throw new IllegalStateException("A change listener is already set");
+        }
+        subscriber = Thread.ofPlatform().name("rate-limiter-policy-changes").daemon().start(() -> {
+            while (!closed) {
+                JedisPubSub pubSub = new JedisPubSub() {
+                    @Override
+                    public void onSubscribe(String channel, int subscribedChannels) {
+                        if(closed) {
+                            unsubscribe();
+                        }
+                    }
+
+                    @Override
+                    public void onMessage(String channel, String field) {
+                        listener.accept(field.startsWith(TIER_PREFIX) ? null : field);
+                    }
+                };
+                subscription = pubSub;
+                try {
+                    jedis.subscribe(pubSub, channel);
+                } catch (JedisException e) {
+                    // changes published while unsubscribed are lost
+                    listener.accept(null);
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(RESUBSCRIBE_DELAY_MILLIS);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /** Stops listening to changes.*/
+    @Override
+    public void close() {
+        closed = true;
+        JedisPubSub subscription = this.subscription;
+        if(subscription!=null && subscription.isSubscribed()) {
+            subscription.unsubscribe();
+        }
+        Thread subscriber = this.subscriber;
+        if(subscriber!=null) {
+            subscriber.interrupt();
+        }
+    }
+}
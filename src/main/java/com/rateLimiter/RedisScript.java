@@ -0,0 +1,82 @@
+package com.rateLimiter;
+
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.ConnectionPool;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.List;
+
+/**
+ * This class wraps a Lua script that is loaded into Redis once and then executed by its SHA1 digest.
+ * If the server has lost its script cache (restart, failover, SCRIPT FLUSH) the script is sent again with EVAL.
+ * On a Redis Cluster the script is loaded on every node, so pipelines spanning all shards find it.
+ * Calls use the binary commands with keys and arguments already encoded, see {@link Encoding}.
+ */
+final class RedisScript {
+
+    private final String source;
+    private final byte[] encodedSource;
+    private volatile byte[] sha;
+
+    RedisScript(String source) {
+        this.source = source;
+        this.encodedSource = Encoding.bytes(source);
+    }
+
+    /**
+     * Runs the script atomically on the server in a single round trip.
+     * @param jedis the client to run the script on
+     * @param keys the keys the script touches
+     * @param args the script arguments
+     * @return the raw reply of the script
+     */
+    Object eval(UnifiedJedis jedis, List<byte[]> keys, List<byte[]> args) {
+        try {
+            return jedis.evalsha(sha(jedis, keys.get(0)), keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedis.eval(encodedSource, keys, args);
+        }
+    }
+
+    /**
+     * Queues the script on a pipeline. The reply throws {@link JedisNoScriptException} if the server
+     * has lost the script, in which case the caller should retry that single call with {@link #eval}.
+     * @param jedis the client the pipeline belongs to, used to load the script the first time
+     * @param pipeline the pipeline to queue the call on
+     * @param keys the keys the script touches
+     * @param args the script arguments
+     * @return the pending reply of the script
+     */
+    Response<Object> eval(UnifiedJedis jedis, AbstractPipeline pipeline, List<byte[]> keys, List<byte[]> args) {
+        return pipeline.evalsha(sha(jedis, keys.get(0)), keys, args);
+    }
+
+    private byte[] sha(UnifiedJedis jedis, byte[] sampleKey) {
+        byte[] digest = sha;
+        if(digest == null) {
+            digest = jedis instanceof JedisCluster cluster ? loadOnAllNodes(cluster) : null;
+            if(digest == null) {
+                digest = jedis.scriptLoad(encodedSource, sampleKey);
+            }
+            sha = digest;
+        }
+        return digest;
+    }
+
+    private byte[] loadOnAllNodes(JedisCluster cluster) {
+        byte[] digest = null;
+        for (ConnectionPool pool : cluster.getClusterNodes().values()) {
+            try (Jedis node = new Jedis(pool.getResource())) {
+                digest = Encoding.bytes(node.scriptLoad(source));
+            } catch (JedisException e) {
+                // a node that is down or failing over gets the script through the EVAL fallback
+            }
+        }
+        return digest;
+    }
+}
@@ -1,56 +1,161 @@
 package com.rateLimiter;
 
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Transaction;
-import redis.clients.jedis.args.ExpiryOption;
+import redis.clients.jedis.UnifiedJedis;
 
-import java.util.Map;
+import java.util.List;
 
-/** This class implements sliding window rate limiting algorithm using Jedis.*/
-public class SlidingWindowRateLimiter {
+/**
+ * This class implements sliding window rate limiting algorithm using Jedis.
+ * The window is split into sub-windows whose counts are kept in a fixed-size ring next to their running total,
+ * so a decision touches no more slots than the smaller of the sub-windows elapsed since the last call and the
+ * sub-windows holding requests.
+ */
+public class SlidingWindowRateLimiter extends AbstractPolicyAwareRedisRateLimiter {
 
-    private final Jedis jedis;
-    private final long windowSize;
-    private final long subWindowSize;
-    private final int limit;
+    /**
+     * KEYS[1] - hash holding the ring of sub-window counts in fields 0 to slots-1, the running total in field
+     * {@code total} and the index of the newest sub-window in field {@code last}
+     * ARGV[1] - window size in seconds, ARGV[2] - sub-window size in seconds, ARGV[3] - request limit,
+     * ARGV[4] - permits to consume, ARGV[5] - current time in milliseconds
+     * Returns {allowed, remaining permits, milliseconds until the newest sub-window leaves the window, milliseconds until
+     * the next sub-window starts}. The reset time is when the window is empty at the latest; the retry time is the
+     * earliest the total can drop, 0 when allowed and -1 when the request asks for more permits than the limit.
+     * Sub-windows that slid out of the window since the last call are subtracted from the total and cleared, either
+     * by probing the slots of the elapsed sub-windows or, when fewer sub-windows hold requests than have elapsed, by
+     * scanning the fields present. A call therefore touches at most as many slots as the smaller of the two counts:
+     * one for a steady caller, and no more than its own past requests for a sparse one.
+     */
+    private static final RedisScript SCRIPT = new RedisScript("""
+            local windowSize = tonumber(ARGV[1])
+            local subWindowSize = tonumber(ARGV[2])
+            local limit = tonumber(ARGV[3])
+            local permits = tonumber(ARGV[4])
+            local now = tonumber(ARGV[5])
+            local slots = math.ceil(windowSize / subWindowSize)
+            local currentSubWindow = math.floor(now / (subWindowSize * 1000))
+            local state = redis.call('HMGET', KEYS[1], 'total', 'last')
+            local totalRequestCount = tonumber(state[1]) or 0
+            local lastSubWindow = tonumber(state[2]) or currentSubWindow
+            local changed = false
+            if currentSubWindow - lastSubWindow >= slots then
+                redis.call('DEL', KEYS[1])
+                totalRequestCount = 0
+                lastSubWindow = currentSubWindow
+                changed = true
+            elseif currentSubWindow > lastSubWindow then
+                local elapsed = currentSubWindow - lastSubWindow
+                if elapsed <= redis.call('HLEN', KEYS[1]) - 2 then
+                    for subWindow = lastSubWindow + 1, currentSubWindow do
+                        local slot = tostring(subWindow % slots)
+                        local expiredCount = tonumber(redis.call('HGET', KEYS[1], slot))
+                        if expiredCount then
+                            totalRequestCount = totalRequestCount - expiredCount
+                            redis.call('HDEL', KEYS[1], slot)
+                        end
+                    end
+                else
+                    local fields = redis.call('HGETALL', KEYS[1])
+                    for i = 1, #fields, 2 do
+                        local slot = tonumber(fields[i])
+                        if slot and (lastSubWindow - slot) % slots >= slots - elapsed then
+                            totalRequestCount = totalRequestCount - tonumber(fields[i + 1])
+                            redis.call('HDEL', KEYS[1], fields[i])
+                        end
+                    end
+                end
+                lastSubWindow = currentSubWindow
+                changed = true
+            end
+            local allowed = 0
+            local retryAfter = 0
+            if totalRequestCount + permits <= limit then
+                redis.call('HINCRBY', KEYS[1], tostring(lastSubWindow % slots), permits)
+                totalRequestCount = totalRequestCount + permits
+                allowed = 1
+                changed = true
+            elseif permits > limit then
+                retryAfter = -1
+            else
+                retryAfter = subWindowSize * 1000 - now % (subWindowSize * 1000)
+            end
+            if changed then
+                redis.call('HSET', KEYS[1], 'total', totalRequestCount, 'last', lastSubWindow)
+                redis.call('PEXPIRE', KEYS[1], windowSize * 1000)
+            end
+            local resetAfter = 0
+            if totalRequestCount > 0 then
+                resetAfter = (lastSubWindow + slots) * subWindowSize * 1000 - now
+            end
+            return {allowed, math.max(0, limit - totalRequestCount), resetAfter, retryAfter}
+            """);
+
+    private static final byte[] KEY_PREFIX = Encoding.bytes("rate-limiter: ");
+    private static final byte[] NO_SUFFIX = {};
+    private static final byte[] WINDOW_SEPARATOR = Encoding.bytes(":");
+
+    private final long windowSizeInSeconds;
+    private final long subWindowSizeInSeconds;
+    private final byte[] windowSize;
+    private final byte[] subWindowSize;
+    private final byte[] limit;
+
+    /**
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param windowSize the window size in seconds
+     * @param subWindowSize the sub-window size in seconds
+     * @param limit the number of requests allowed per window
+     */
+    public SlidingWindowRateLimiter(UnifiedJedis jedis, long windowSize, long subWindowSize, int limit) {
+        super(jedis, SCRIPT);
+        this.windowSizeInSeconds = windowSize;
+        this.subWindowSizeInSeconds = subWindowSize;
+        this.windowSize = Encoding.number(windowSize);
+        this.subWindowSize = Encoding.number(subWindowSize);
+        this.limit = Encoding.number(limit);
+    }
 
+    /** @deprecated a single {@link Jedis} connection is not thread-safe, use {@link #SlidingWindowRateLimiter(UnifiedJedis, long, long, int)}.*/
+    @Deprecated
     public SlidingWindowRateLimiter(Jedis jedis, long windowSize, long subWindowSize, int limit) {
-        this.jedis = jedis;
-        this.windowSize = windowSize;
-        this.subWindowSize = subWindowSize;
-        this.limit = limit;
+        this(unified(jedis), windowSize, subWindowSize, limit);
+    }
+
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis) {
+        return List.of(key(KEY_PREFIX, clientId, NO_SUFFIX));
     }
 
     /**
-     * Checks if a client is within their allowed request limit.
-     * If yes, the request is allowed and the counter is updated. If not, the request is blocked.
-     * @param clientId the unique id of the client
-     * @return True if request is allowed. False if not.
+     * The ring of a window other than the own one is laid out for that window, so it gets its own key, e.g.
+     * {@code rate-limiter: <clientId>:3600}, and a client whose window changes starts afresh.
      */
-    public boolean isAllowed(String clientId) {
-        String key = "rate-limiter: " + clientId;
-        Map<String, String> subWindowCounts = jedis.hgetAll(key);
-        Long totalRequestCount = subWindowCounts.values()
-                .stream()
-                .mapToLong(Long::parseLong)
-                .sum();
-
-        boolean isAllowed = totalRequestCount<limit;
-        if(isAllowed) {
-            Long currentTimeInMilliseconds = System.currentTimeMillis();
-            Long subWindowSizeInMilliseconds = subWindowSize*1000;
-            Long currentSubWindow = currentTimeInMilliseconds/subWindowSizeInMilliseconds;
-
-            Transaction transaction = jedis.multi();
-            transaction.hincrBy(key, String.valueOf(currentSubWindow), 1);
-            transaction.hexpire(key, windowSize, ExpiryOption.NX, String.valueOf(currentSubWindow));
-
-            var result = transaction.exec();
-            if(result==null || result.isEmpty()) {
-                throw new IllegalStateException("Empty result from Redis");
-            }
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis, RateLimitPolicy policy) {
+        if(policy.windowSeconds()==windowSizeInSeconds) {
+            return encodeKeys(clientId, currentTimeMillis);
         }
+        return List.of(key(KEY_PREFIX, clientId, WINDOW_SEPARATOR, policy.windowSeconds()));
+    }
+
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis) {
+        return List.of(windowSize, subWindowSize, limit, Encoding.number(permits), Encoding.number(currentTimeMillis));
+    }
 
-        return isAllowed;
+    /**
+     * The window of a policy is split into sub-windows of the own size, or into a single one when the window is shorter.
+     * @throws IllegalArgumentException if the window of the policy is not a whole number of sub-windows
+     */
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis, RateLimitPolicy policy) {
+        long policyWindowSize = policy.windowSeconds();
+        long policySubWindowSize = Math.min(subWindowSizeInSeconds, policyWindowSize);
+        if(policyWindowSize % policySubWindowSize!=0) {
+            throw new IllegalArgumentException("Policy window of " + policyWindowSize
+                    + "s is not a whole number of sub-windows of " + policySubWindowSize + "s");
+        }
+        return List.of(Encoding.number(policyWindowSize), Encoding.number(policySubWindowSize),
+                Encoding.number(policy.limit()), Encoding.number(permits), Encoding.number(currentTimeMillis));
     }
 }
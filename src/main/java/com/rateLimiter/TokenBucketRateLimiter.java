@@ -1,54 +1,185 @@
 package com.rateLimiter;
 
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Transaction;
+import redis.clients.jedis.UnifiedJedis;
 
-/** This class implements token bucket rate limiting algorithm using Jedis.*/
-public class TokenBucketRateLimiter {
+import java.util.List;
 
-    private final Jedis jedis;
-    private final int maxBucketCapacity;
-    private final double refillRate;
+/**
+ * This class implements token bucket rate limiting algorithm using Jedis.
+ *
+ * <p>The state of a client is stored either in two string keys that are kept forever, or, with
+ * {@link Storage#COMPACT_HASH}, in one small hash that expires once the bucket would be full again. A full bucket
+ * behaves exactly like a missing one, so idle clients cost no memory at all in the compact layout.</p>
+ */
+public class TokenBucketRateLimiter extends AbstractPolicyAwareRedisRateLimiter {
 
-    public TokenBucketRateLimiter(Jedis jedis, int maxBucketCapacity, double refillRate) {
-        this.jedis = jedis;
-        this.maxBucketCapacity = maxBucketCapacity;
-        this.refillRate = refillRate;
+    /** How the state of a client is laid out in Redis. Switching layouts starts every client with a full bucket.*/
+    public enum Storage {
+        /** Two string keys per client, {@code rate-limit:<client>:count} and {@code rate-limit:<client>:lastRefill}, never expiring.*/
+        SEPARATE_KEYS,
+        /**
+         * One hash per client, {@code rate-limit:<client>:bucket} with fields {@code t} (tokens) and {@code r}
+         * (last refill time), expiring when the bucket would be full again and deleted when it is full.
+         */
+        COMPACT_HASH
     }
 
     /**
-     * Checks if a client is within their allowed request limit.
-     * If yes, the request is allowed. If not, the request is blocked.
-     * @param clientId the unique id of the client
-     * @return True if request is allowed. False if not.
+     * Loads the state kept in two string keys into {@code storedTokenCount} and {@code storedLastRefillTime}.
+     * KEYS[1] - token count, KEYS[2] - last refill time in milliseconds
+     */
+    static final String LOAD_FROM_KEYS = """
+            local storedTokenCount = redis.call('GET', KEYS[1])
+            local storedLastRefillTime = redis.call('GET', KEYS[2])
+            """;
+
+    /** Stores {@code tokenCount} and {@code lastRefillTime} into the two string keys.*/
+    static final String STORE_TO_KEYS = """
+            redis.call('SET', KEYS[1], tokenCount)
+            redis.call('SET', KEYS[2], lastRefillTime)
+            """;
+
+    /**
+     * Loads the state kept in one hash into {@code storedTokenCount} and {@code storedLastRefillTime}.
+     * KEYS[1] - hash with fields t (token count) and r (last refill time in milliseconds)
      */
-    public boolean isAllowed(String clientId) {
-        String keyCount = "rate-limit:" + clientId +":count";
-        String keyLastRefill = "rate-limit:" + clientId +":lastRefill";
-
-        Transaction transaction = jedis.multi();
-        transaction.get(keyLastRefill);
-        transaction.get(keyCount);
-        var results = transaction.exec();
-
-        long currentTime = System.currentTimeMillis();
-        long lastRefillTime = results.get(0)!=null?Long.parseLong((String)results.get(0)):currentTime;
-        int tokenCount = results.get(1)!=null?Integer.parseInt((String) results.get(1)):maxBucketCapacity;
-
-        long elapsedTime = currentTime - lastRefillTime;
-        double elapsedTimeInSeconds = elapsedTime/1000.0;
-        int tokensToAdd = (int)(elapsedTimeInSeconds*refillRate);
-
-        tokenCount = Math.min(maxBucketCapacity, tokenCount+tokensToAdd);
-        boolean isAllowed = tokenCount>0;
-        if(isAllowed) {
-            tokenCount--;
+    static final String LOAD_FROM_HASH = """
+            local storedState = redis.call('HMGET', KEYS[1], 't', 'r')
+            local storedTokenCount = storedState[1]
+            local storedLastRefillTime = storedState[2]
+            """;
+
+    /**
+     * Stores {@code tokenCount} and {@code lastRefillTime} into the hash and sets it to expire when the bucket would
+     * be full again. A full bucket is deleted since a missing hash reads as one.
+     */
+    static final String STORE_TO_HASH = """
+            if tokenCount >= maxBucketCapacity then
+                redis.call('DEL', KEYS[1])
+            else
+                redis.call('HSET', KEYS[1], 't', tokenCount, 'r', lastRefillTime)
+                if refillRate > 0 then
+                    local timeToFull = math.ceil(lastRefillTime + (maxBucketCapacity - tokenCount) * 1000 / refillRate - currentTime)
+                    redis.call('PEXPIRE', KEYS[1], math.max(1, timeToFull))
+                else
+                    redis.call('PERSIST', KEYS[1])
+                end
+            end
+            """;
+
+    /**
+     * Refills the bucket of a client loaded by {@link #LOAD_FROM_KEYS} or {@link #LOAD_FROM_HASH} and leaves
+     * {@code tokenCount}, {@code lastRefillTime} and {@code permits} in scope.
+     * ARGV[1] - bucket capacity, ARGV[2] - refill rate in tokens per second, ARGV[3] - permits to consume,
+     * ARGV[4] - current time in milliseconds
+     * Only whole tokens are added; the last refill time moves forward by the time those tokens took,
+     * so the fractional remainder is carried over to the next call instead of being lost.
+     */
+    static final String REFILL_SCRIPT = """
+            local maxBucketCapacity = tonumber(ARGV[1])
+            local refillRate = tonumber(ARGV[2])
+            local permits = tonumber(ARGV[3])
+            local currentTime = tonumber(ARGV[4])
+            local lastRefillTime = tonumber(storedLastRefillTime) or currentTime
+            local tokenCount = tonumber(storedTokenCount) or maxBucketCapacity
+            local elapsedTime = math.max(0, currentTime - lastRefillTime)
+            local tokensToAdd = math.floor(elapsedTime / 1000 * refillRate)
+            if tokensToAdd > 0 then
+                tokenCount = tokenCount + tokensToAdd
+                lastRefillTime = lastRefillTime + math.floor(tokensToAdd * 1000 / refillRate)
+            end
+            if tokenCount >= maxBucketCapacity then
+                tokenCount = maxBucketCapacity
+                lastRefillTime = currentTime
+            end
+            """;
+
+    /**
+     * Takes the decision for a refilled bucket and leaves {allowed, remaining tokens, milliseconds until the bucket
+     * is full, milliseconds until enough tokens are refilled for the request} in {@code result}, the last being 0
+     * when allowed and -1 when the request asks for more permits than the bucket holds or the bucket never refills.
+     */
+    private static final String DECIDE_SCRIPT = """
+            local allowed = 0
+            local retryAfter = 0
+            if tokenCount >= permits then
+                tokenCount = tokenCount - permits
+                allowed = 1
+            elseif permits > maxBucketCapacity or refillRate <= 0 then
+                retryAfter = -1
+            else
+                retryAfter = math.max(1, math.ceil(lastRefillTime + (permits - tokenCount) * 1000 / refillRate - currentTime))
+            end
+            local resetAfter = 0
+            if tokenCount < maxBucketCapacity then
+                resetAfter = -1
+                if refillRate > 0 then
+                    resetAfter = math.max(0, math.ceil(lastRefillTime + (maxBucketCapacity - tokenCount) * 1000 / refillRate - currentTime))
+                end
+            end
+            local result = {allowed, tokenCount, resetAfter, retryAfter}
+            """;
+
+    private static final RedisScript SCRIPT = new RedisScript(
+            LOAD_FROM_KEYS + REFILL_SCRIPT + DECIDE_SCRIPT + STORE_TO_KEYS + "return result\n");
+
+    private static final RedisScript COMPACT_SCRIPT = new RedisScript(
+            LOAD_FROM_HASH + REFILL_SCRIPT + DECIDE_SCRIPT + STORE_TO_HASH + "return result\n");
+
+    private static final byte[] KEY_PREFIX = Encoding.bytes("rate-limit:");
+    private static final byte[] COUNT_SUFFIX = Encoding.bytes(":count");
+    private static final byte[] LAST_REFILL_SUFFIX = Encoding.bytes(":lastRefill");
+    private static final byte[] BUCKET_SUFFIX = Encoding.bytes(":bucket");
+
+    private final byte[] maxBucketCapacity;
+    private final byte[] refillRate;
+    private final Storage storage;
+
+    /**
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param maxBucketCapacity the maximum number of tokens in the bucket
+     * @param refillRate the number of tokens added per second
+     */
+    public TokenBucketRateLimiter(UnifiedJedis jedis, int maxBucketCapacity, double refillRate) {
+        this(jedis, maxBucketCapacity, refillRate, Storage.SEPARATE_KEYS);
+    }
+
+    /**
+     * @param jedis a thread-safe client such as {@link redis.clients.jedis.JedisPooled}
+     * @param maxBucketCapacity the maximum number of tokens in the bucket
+     * @param refillRate the number of tokens added per second
+     * @param storage how the state of a client is laid out in Redis
+     */
+    public TokenBucketRateLimiter(UnifiedJedis jedis, int maxBucketCapacity, double refillRate, Storage storage) {
+        super(jedis, storage==Storage.COMPACT_HASH ? COMPACT_SCRIPT : SCRIPT);
+        this.maxBucketCapacity = Encoding.number(maxBucketCapacity);
+        this.refillRate = Encoding.number(refillRate);
+        this.storage = storage;
+    }
+
+    /** @deprecated a single {@link Jedis} connection is not thread-safe, use {@link #TokenBucketRateLimiter(UnifiedJedis, int, double)}.*/
+    @Deprecated
+    public TokenBucketRateLimiter(Jedis jedis, int maxBucketCapacity, double refillRate) {
+        this(unified(jedis), maxBucketCapacity, refillRate);
+    }
+
+    @Override
+    List<byte[]> encodeKeys(String clientId, long currentTimeMillis) {
+        if(storage==Storage.COMPACT_HASH) {
+            return List.of(key(KEY_PREFIX, clientId, BUCKET_SUFFIX));
         }
-        transaction = jedis.multi();
-        transaction.set(keyCount, String.valueOf(tokenCount));
-        transaction.set(keyLastRefill, String.valueOf(currentTime));
-        transaction.exec();
+        return List.of(key(KEY_PREFIX, clientId, COUNT_SUFFIX), key(KEY_PREFIX, clientId, LAST_REFILL_SUFFIX));
+    }
+
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis) {
+        return List.of(maxBucketCapacity, refillRate, Encoding.number(permits), Encoding.number(currentTimeMillis));
+    }
 
-        return isAllowed;
+    @Override
+    List<byte[]> encodeArgs(int permits, long currentTimeMillis, RateLimitPolicy policy) {
+        return List.of(Encoding.number(policy.limit()), Encoding.number(policy.refillRate()),
+                Encoding.number(permits), Encoding.number(currentTimeMillis));
     }
 }
@@ -0,0 +1,109 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the bytes allocated per decision on the hot paths. Only the paths that allocate little or nothing are
+ * gated, with generous bounds; the bytes of a Redis decision depend on the client library and are only reported.
+ */
+class AllocationTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int DECISIONS = 100_000;
+    private static final int ROUNDS = 5;
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Starts Redis on first use, so that the checks without a round trip run without Docker.*/
+    private static final class Redis {
+        static final RedisContainer container = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+        static {
+            container.start();
+        }
+    }
+
+    /**
+     * Returns the average number of bytes the current thread allocates per run of the decision, the lowest of a few
+     * rounds so that a round still running interpreted code while the JIT compiles does not count.
+     */
+    private static double bytesPerDecision(int decisions, Runnable decision) {
+        for (int i = 0; i < WARMUP; i++) {
+            decision.run();
+        }
+        double lowest = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < decisions; i++) {
+                decision.run();
+            }
+            lowest = Math.min(lowest, (double) (threads.getCurrentThreadAllocatedBytes() - before) / decisions);
+        }
+        return lowest;
+    }
+
+    @Test
+    void givenInMemoryRateLimitersWhenDecidingThenShouldAllocateNothing() {
+        InMemoryTokenBucketRateLimiter tokenBucket = new InMemoryTokenBucketRateLimiter(100, 1_000_000);
+        InMemoryFixedWindowRateLimiter fixedWindow = new InMemoryFixedWindowRateLimiter(1, 1_000_000);
+
+        double tokenBucketBytes = bytesPerDecision(DECISIONS, () -> tokenBucket.isAllowed("client1"));
+        double fixedWindowBytes = bytesPerDecision(DECISIONS, () -> fixedWindow.isAllowed("client1"));
+        System.out.printf("In-memory bytes per decision: token bucket %.2f, fixed window %.2f%n",
+                tokenBucketBytes, fixedWindowBytes);
+
+        assertThat(tokenBucketBytes)
+                .withFailMessage("The in-memory token bucket allocated %.2f bytes per decision", tokenBucketBytes)
+                .isLessThan(16.0);
+        assertThat(fixedWindowBytes)
+                .withFailMessage("The in-memory fixed window allocated %.2f bytes per decision", fixedWindowBytes)
+                .isLessThan(16.0);
+    }
+
+    @Test
+    void givenRedisRateLimiterWhenEncodingARequestThenShouldOnlyAllocateTheKeyAndTimestamp() {
+        // encoding makes no round trip, so the client is never connected
+        try (JedisPooled jedis = new JedisPooled("localhost", 6379)) {
+            TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(jedis, 100, 10);
+            long now = System.currentTimeMillis();
+
+            assertThat(rateLimiter.keys("client1", now))
+                    .withFailMessage("The encoded keys should match the documented key names")
+                    .containsExactly("rate-limit:client1:count", "rate-limit:client1:lastRefill");
+
+            double bytes = bytesPerDecision(DECISIONS, () -> {
+                rateLimiter.encodeKeys("client1", now);
+                rateLimiter.encodeArgs(1, now);
+            });
+            System.out.printf("Bytes per encoded token bucket request: %.2f%n", bytes);
+            // two keys, the timestamp and the two lists holding them take 152 bytes
+            assertThat(bytes)
+                    .withFailMessage("Encoding a request allocated %.2f bytes", bytes)
+                    .isLessThan(1_024.0);
+        }
+    }
+
+    @Test
+    void givenRedisRateLimiterWhenDecidingThenShouldReportBytesPerDecision() {
+        try (JedisPooled jedis = new JedisPooled(Redis.container.getHost(), Redis.container.getFirstMappedPort())) {
+            jedis.flushAll();
+            List<AbstractRedisRateLimiter> rateLimiters = List.of(
+                    new FixedWindowRateLimiter(jedis, 3600, Integer.MAX_VALUE),
+                    new TokenBucketRateLimiter(jedis, 1_000_000, 1_000_000),
+                    new GcraRateLimiter(jedis, 1_000_000, 1_000_000));
+
+            for (AbstractRedisRateLimiter rateLimiter : rateLimiters) {
+                double bytes = bytesPerDecision(DECISIONS / 10, () -> rateLimiter.isAllowed("client1"));
+                // between 920 and 1,240 bytes per decision depending on the limiter when measured
+                System.out.printf("%s bytes per decision: %.0f%n", rateLimiter.getClass().getSimpleName(), bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApproximateSlidingWindowRateLimiterTest {
+
+    private JedisPooled jedis;
+    private ApproximateSlidingWindowRateLimiter approximateRateLimiter;
+    private static final RedisContainer redisContainer = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+    static {
+        redisContainer.start();
+    }
+
+    @BeforeEach
+    public void setup() {
+        jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() { jedis.close(); }
+
+    @Test
+    public void givenApproximateRateLimiterWhenRequestCountLimitIsExceededThenShouldDeny() {
+        approximateRateLimiter = new ApproximateSlidingWindowRateLimiter(jedis, 60, 5);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(approximateRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request %d should be allowed", i)
+                    .isTrue();
+        }
+
+        assertThat(approximateRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond limit should be denied")
+                .isFalse();
+    }
+
+    @Test
+    public void givenApproximateRateLimiterWhenWindowHasPassedThenShouldAllowRequestsAgain() throws InterruptedException {
+        approximateRateLimiter = new ApproximateSlidingWindowRateLimiter(jedis, 1, 5);
+        for (int i = 1; i <= 5; i++) {
+            approximateRateLimiter.isAllowed("client1");
+        }
+
+        Thread.sleep(2 * 1000 + 100);
+
+        assertThat(approximateRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request after two windows should be allowed")
+                .isTrue();
+    }
+
+    @Test
+    public void givenApproximateRateLimiterWhenRequestsFromMultipleClientsThenShouldStoreTwoCountersPerClientAtMost() {
+        approximateRateLimiter = new ApproximateSlidingWindowRateLimiter(jedis, 10, 5);
+
+        for (int i = 1; i <= 5; i++) {
+            approximateRateLimiter.isAllowed("client1");
+            approximateRateLimiter.isAllowed("client2");
+        }
+
+        assertThat(jedis.keys("rate-limit-approximate: client1:*").size())
+                .withFailMessage("A client should cost at most two counters")
+                .isLessThanOrEqualTo(2);
+        assertThat(approximateRateLimiter.isAllowed("client2"))
+                .withFailMessage("Client 2 request beyond limit should be denied")
+                .isFalse();
+    }
+
+    @Test
+    public void givenSteadyTrafficWhenComparedWithExactSlidingWindowThenShouldAdmitAboutTheSameNumberOfRequests() throws InterruptedException {
+        approximateRateLimiter = new ApproximateSlidingWindowRateLimiter(jedis, 2, 10);
+        SlidingWindowRateLimiter exactRateLimiter = new SlidingWindowRateLimiter(jedis, 2, 1, 10);
+
+        int approximateAllowed = 0;
+        int exactAllowed = 0;
+        for (int i = 1; i <= 120; i++) {
+            approximateAllowed += approximateRateLimiter.isAllowed("client1") ? 1 : 0;
+            exactAllowed += exactRateLimiter.isAllowed("client1") ? 1 : 0;
+            Thread.sleep(50);
+        }
+
+        System.out.printf("Admitted over 6s at 20 req/s with a limit of 10 per 2s: exact=%d approximate=%d%n",
+                exactAllowed, approximateAllowed);
+        assertThat(Math.abs(approximateAllowed - exactAllowed))
+                .withFailMessage("Approximate mode admitted %d requests but exact mode admitted %d", approximateAllowed, exactAllowed)
+                .isLessThanOrEqualTo(exactAllowed / 4);
+    }
+
+    @Test
+    public void givenFixedWindowClientNamedLikeAWindowCounterWhenRequestingThenShouldNotShareItsCount() {
+        approximateRateLimiter = new ApproximateSlidingWindowRateLimiter(jedis, 3600, 5);
+        FixedWindowRateLimiter fixedWindowRateLimiter = new FixedWindowRateLimiter(jedis, 3600, 5);
+        String windowCounterName = "client1:" + System.currentTimeMillis() / 3_600_000;
+        for (int i = 1; i <= 5; i++) {
+            fixedWindowRateLimiter.isAllowed(windowCounterName);
+        }
+
+        assertThat(approximateRateLimiter.isAllowed("client1"))
+                .withFailMessage("The approximate limiter should keep its own counters")
+                .isTrue();
+    }
+}
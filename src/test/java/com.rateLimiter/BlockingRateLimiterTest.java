@@ -0,0 +1,103 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockingRateLimiterTest {
+
+    @Test
+    void givenEmptyBucketWhenAcquiringThenShouldWaitUntilTheNextToken() throws InterruptedException {
+        BlockingRateLimiter rateLimiter = new BlockingRateLimiter(new InMemoryTokenBucketRateLimiter(1, 10));
+        assertThat(rateLimiter.acquire("client1", 1, Duration.ZERO))
+                .withFailMessage("A full bucket should grant a permit without waiting")
+                .isTrue();
+
+        long start = System.nanoTime();
+        assertThat(rateLimiter.acquire("client1", 1, Duration.ofSeconds(1)))
+                .withFailMessage("The next token should arrive within the timeout")
+                .isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .withFailMessage("The wait should last about one refill interval of 100ms")
+                .isBetween(50L, 500L);
+    }
+
+    @Test
+    void givenCapacityTooFarAwayWhenAcquiringThenShouldGiveUpWithoutWaiting() throws InterruptedException {
+        BlockingRateLimiter rateLimiter = new BlockingRateLimiter(new InMemoryTokenBucketRateLimiter(2, 1));
+        rateLimiter.acquire("client1", 2, Duration.ZERO);
+
+        long start = System.nanoTime();
+        assertThat(rateLimiter.acquire("client1", 1, Duration.ofMillis(200)))
+                .withFailMessage("A token one second away should not be acquired within 200ms")
+                .isFalse();
+        assertThat(rateLimiter.acquire("client1", 3, Duration.ofSeconds(10)))
+                .withFailMessage("More permits than the capacity should never be acquired")
+                .isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .withFailMessage("Hopeless requests should return at once")
+                .isLessThan(100L);
+    }
+
+    @Test
+    void givenSeveralWaitersOfOneClientWhenCapacityComesBackThenShouldServeThemInArrivalOrder() throws InterruptedException {
+        BlockingRateLimiter rateLimiter = new BlockingRateLimiter(new InMemoryTokenBucketRateLimiter(1, 20));
+        rateLimiter.acquire("client1", 1, Duration.ZERO);
+        ConcurrentLinkedQueue<Integer> served = new ConcurrentLinkedQueue<>();
+
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int waiter = i;
+            waiters.add(Thread.ofVirtual().start(() -> {
+                try {
+                    if(rateLimiter.acquire("client1", 1, Duration.ofSeconds(5))) {
+                        served.add(waiter);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+
+        assertThat(List.copyOf(served))
+                .withFailMessage("Waiters should be served first come first served but were %s", served)
+                .containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void givenThousandsOfVirtualThreadsWhenWaitingForCapacityThenShouldAllBeServed() throws InterruptedException {
+        BlockingRateLimiter rateLimiter = new BlockingRateLimiter(new InMemoryTokenBucketRateLimiter(100, 5_000));
+        AtomicInteger acquired = new AtomicInteger();
+
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            waiters.add(Thread.ofVirtual().start(() -> {
+                try {
+                    if(rateLimiter.acquire("client1", 1, Duration.ofSeconds(30))) {
+                        acquired.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+
+        assertThat(acquired.get())
+                .withFailMessage("Every waiter should eventually acquire a permit")
+                .isEqualTo(5_000);
+    }
+}
@@ -0,0 +1,44 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedExpiringMapTest {
+
+    @Test
+    void givenExpiredEntryWhenReadThenShouldDropIt() {
+        BoundedExpiringMap<Long> map = new BoundedExpiringMap<>(10, Long::longValue);
+        map.put("client1", 100L, 0);
+
+        assertThat(map.get("client1", 99))
+                .withFailMessage("An entry should be returned until it expires")
+                .isEqualTo(100L);
+        assertThat(map.get("client1", 100))
+                .withFailMessage("An entry should not be returned once it expired")
+                .isNull();
+        assertThat(map.size())
+                .withFailMessage("An expired entry should be dropped when read")
+                .isZero();
+    }
+
+    @Test
+    void givenFullMapWithExpiredEntriesWhenPuttingThenShouldDropTheExpiredOnesFirst() {
+        BoundedExpiringMap<Long> map = new BoundedExpiringMap<>(10, Long::longValue);
+        for (int i = 0; i < 5; i++) {
+            map.put("expired" + i, 50L, 0);
+            map.put("live" + i, 1_000L, 0);
+        }
+
+        map.put("client1", 1_000L, 100);
+
+        assertThat(map.size())
+                .withFailMessage("Only the expired entries should have been evicted")
+                .isEqualTo(6);
+        for (int i = 0; i < 5; i++) {
+            assertThat(map.get("live" + i, 100))
+                    .withFailMessage("Live entry %d should be kept", i)
+                    .isNotNull();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingPolicyStoreTest {
+
+    /** A store giving every client the same policy, counting its lookups and letting tests report changes.*/
+    private static final class CountingPolicyStore implements PolicyStore {
+        final AtomicInteger loads = new AtomicInteger();
+        volatile RateLimitPolicy policy = new RateLimitPolicy(10, 1_000);
+        Consumer<String> listener;
+
+        @Override
+        public RateLimitPolicy load(String clientId) {
+            loads.incrementAndGet();
+            return policy;
+        }
+
+        @Override
+        public void setChangeListener(Consumer<String> listener) {
+            this.listener = listener;
+        }
+    }
+
+    @Test
+    void givenCachedPolicyWhenTtlElapsesThenShouldLookItUpAgain() throws InterruptedException {
+        CountingPolicyStore store = new CountingPolicyStore();
+        CachingPolicyStore cache = new CachingPolicyStore(store, 10, Duration.ofMillis(100));
+
+        cache.load("client1");
+        cache.load("client1");
+        assertThat(store.loads.get())
+                .withFailMessage("A cached policy should not be looked up again within the TTL")
+                .isEqualTo(1);
+
+        Thread.sleep(150);
+        cache.load("client1");
+        assertThat(store.loads.get())
+                .withFailMessage("An expired policy should be looked up again")
+                .isEqualTo(2);
+    }
+
+    @Test
+    void givenManyClientsWhenCachingThenShouldNotExceedMaxSize() {
+        CachingPolicyStore cache = new CachingPolicyStore(new CountingPolicyStore(), 100, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10_000; i++) {
+            cache.load("client" + i);
+        }
+
+        assertThat(cache.size())
+                .withFailMessage("The cache should hold at most 100 clients but held %d", cache.size())
+                .isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void givenStoreReportsChangeWhenLoadingThenShouldReturnTheNewPolicy() {
+        CountingPolicyStore store = new CountingPolicyStore();
+        CachingPolicyStore cache = new CachingPolicyStore(store, 10, Duration.ofMinutes(1));
+        cache.load("client1");
+        cache.load("client2");
+
+        store.policy = new RateLimitPolicy(20, 1_000);
+        store.listener.accept("client1");
+        assertThat(cache.load("client1"))
+                .withFailMessage("The changed client should get its new policy")
+                .isEqualTo(store.policy);
+        assertThat(cache.load("client2"))
+                .withFailMessage("Other clients should keep their cached policy")
+                .isEqualTo(new RateLimitPolicy(10, 1_000));
+
+        store.listener.accept(null);
+        assertThat(cache.load("client2"))
+                .withFailMessage("Every client should get the new policy when all policies changed")
+                .isEqualTo(store.policy);
+        assertThat(cache.missCount())
+                .withFailMessage("Only the first lookups and the invalidated ones should reach the store")
+                .isEqualTo(4);
+    }
+}
@@ -0,0 +1,120 @@
+package com.rateLimiter;
+
+import com.rateLimiter.CompositeRateLimiter.Rule;
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompositeRateLimiterTest {
+
+    private JedisPooled jedis;
+    private CompositeRateLimiter compositeRateLimiter;
+    private static final RedisContainer redisContainer = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+    static {
+        redisContainer.start();
+    }
+
+    @BeforeEach
+    public void setup() {
+        jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() { jedis.close(); }
+
+    /** Users are named like {@code tenant/user}.*/
+    private static String tenantOf(String userId) {
+        return userId.substring(0, userId.indexOf('/'));
+    }
+
+    @Test
+    void givenUserAndTenantLimitsWhenEitherIsExceededThenShouldDeny() {
+        compositeRateLimiter = new CompositeRateLimiter(jedis, List.of(
+                Rule.fixedWindow("user", userId -> userId, 60, 2),
+                Rule.fixedWindow("tenant", CompositeRateLimiterTest::tenantOf, 60, 3)));
+
+        for (int i = 1; i <= 2; i++) {
+            assertThat(compositeRateLimiter.isAllowed("acme/alice"))
+                    .withFailMessage("Request %d of alice should be allowed", i)
+                    .isTrue();
+        }
+        assertThat(compositeRateLimiter.isAllowed("acme/alice"))
+                .withFailMessage("Request beyond the user limit should be denied")
+                .isFalse();
+        assertThat(compositeRateLimiter.isAllowed("acme/bob"))
+                .withFailMessage("The first request of bob should be allowed")
+                .isTrue();
+        assertThat(compositeRateLimiter.isAllowed("acme/bob"))
+                .withFailMessage("Request beyond the tenant limit should be denied")
+                .isFalse();
+        assertThat(compositeRateLimiter.isAllowed("other/carol"))
+                .withFailMessage("Another tenant should have its own limit")
+                .isTrue();
+    }
+
+    @Test
+    void givenNestedLimitsWhenOuterLevelDeniesThenShouldNotConsumeFromAnyLevel() {
+        compositeRateLimiter = new CompositeRateLimiter(jedis, List.of(
+                Rule.fixedWindow("user", userId -> userId, 60, 10),
+                Rule.tokenBucket("tenant", CompositeRateLimiterTest::tenantOf, 3, 0.01),
+                Rule.approximateSlidingWindow("global", userId -> "all", 60, 100)));
+
+        assertThat(compositeRateLimiter.isAllowed("acme/alice", 3))
+                .withFailMessage("A request within every limit should be allowed")
+                .isTrue();
+        assertThat(compositeRateLimiter.isAllowed("acme/bob"))
+                .withFailMessage("Request beyond the tenant bucket should be denied")
+                .isFalse();
+
+        assertThat(jedis.get("rate-limit:user:acme/bob"))
+                .withFailMessage("A denied request should not be counted at the user level")
+                .isNull();
+        long currentWindow = System.currentTimeMillis() / 60_000;
+        String globalCount = jedis.get("rate-limit:global:all:" + currentWindow);
+        assertThat(globalCount==null ? jedis.get("rate-limit:global:all:" + (currentWindow - 1)) : globalCount)
+                .withFailMessage("A denied request should not be counted at the global level")
+                .isEqualTo("3");
+    }
+
+    @Test
+    void givenNestedLimitsWhenRequestIsDecidedThenShouldReportTheTightestLevel() {
+        compositeRateLimiter = new CompositeRateLimiter(jedis, List.of(
+                Rule.fixedWindow("user", userId -> userId, 60, 5),
+                Rule.tokenBucket("tenant", CompositeRateLimiterTest::tenantOf, 20, 1)));
+
+        RateLimitResult result = compositeRateLimiter.tryAcquire("acme/alice", 2);
+        assertThat(result.remaining())
+                .withFailMessage("The user level should leave 3 permits")
+                .isEqualTo(3L);
+        assertThat(result.resetAfterMillis())
+                .withFailMessage("The slowest level, the fixed window, should reset within a minute")
+                .isBetween(59_000L, 60_000L);
+
+        RateLimitResult denied = compositeRateLimiter.tryAcquire("acme/alice", 6);
+        assertThat(denied.allowed())
+                .withFailMessage("A request beyond the user limit should be denied")
+                .isFalse();
+        assertThat(denied.retryAfterMillis())
+                .withFailMessage("A request above the user limit should never be allowed")
+                .isEqualTo(-1L);
+    }
+
+    @Test
+    void givenLargeTokenBucketRuleWhenBuildingThenShouldNotOverflow() {
+        assertThat(Rule.tokenBucket("user", userId -> userId, Integer.MAX_VALUE, 1).windowMillis())
+                .withFailMessage("The window of a large bucket should be computed without int overflow")
+                .isEqualTo(Integer.MAX_VALUE * 1000L);
+        assertThatThrownBy(() -> Rule.tokenBucket("user", userId -> userId, Integer.MAX_VALUE, 1e-12))
+                .withFailMessage("A window that does not fit in a long should be rejected")
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,189 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives each Redis limiter from many threads spread over several instances, each with its own connection pool as
+ * if it ran in its own JVM, all hitting the same few clients at once. Reports the permits admitted against the
+ * limit and the decision throughput, and fails when more permits are admitted than the limit allows.
+ *
+ * <p>The sizes can be raised for a longer run with {@code -Dstress.instances}, {@code -Dstress.threads} and
+ * {@code -Dstress.requests}, the number of requests per thread.</p>
+ */
+class ConcurrencyStressTest {
+
+    private static final int INSTANCES = Integer.getInteger("stress.instances", 4);
+    private static final int THREADS = Integer.getInteger("stress.threads", 32);
+    private static final int REQUESTS = Integer.getInteger("stress.requests", 500);
+    private static final int HOT_CLIENTS = 4;
+    private static final int LIMIT = 1_000;
+    /** Refills slowly enough that at most one permit comes back during a run.*/
+    private static final double REFILL_RATE = 0.01;
+    private static final RedisContainer redisContainer = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+    static {
+        redisContainer.start();
+    }
+
+    /**
+     * @param admitted the permits admitted per hot client
+     * @param decisionsPerSecond the decisions taken per second over all threads
+     */
+    private record StressResult(int[] admitted, double decisionsPerSecond) {
+
+        int maxAdmitted() {
+            int max = 0;
+            for (int count : admitted) {
+                max = Math.max(max, count);
+            }
+            return max;
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        try (JedisPooled jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort())) {
+            jedis.flushAll();
+        }
+    }
+
+    /**
+     * Starts all threads at once, each sending its requests round-robin to the hot clients through the limiter of
+     * its instance.
+     */
+    private static StressResult stress(String name, Function<UnifiedJedis, RateLimiter> factory) throws InterruptedException {
+        List<JedisPooled> pools = new ArrayList<>();
+        List<RateLimiter> rateLimiters = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            JedisPooled jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+            pools.add(jedis);
+            rateLimiters.add(factory.apply(jedis));
+        }
+        AtomicInteger[] admitted = new AtomicInteger[HOT_CLIENTS];
+        for (int i = 0; i < HOT_CLIENTS; i++) {
+            admitted[i] = new AtomicInteger();
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicInteger errors = new AtomicInteger();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            RateLimiter rateLimiter = rateLimiters.get(thread % INSTANCES);
+            int offset = thread;
+            Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < REQUESTS; i++) {
+                        int client = (offset + i) % HOT_CLIENTS;
+                        if(rateLimiter.isAllowed("client" + client)) {
+                            admitted[client].incrementAndGet();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        boolean finished = done.await(2, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        for (int i = 0; i < INSTANCES; i++) {
+            rateLimiters.get(i).close();
+            pools.get(i).close();
+        }
+        assertThat(finished && errors.get()==0)
+                .withFailMessage("%s: every thread should finish without error but %d failed", name, errors.get())
+                .isTrue();
+
+        int[] counts = new int[HOT_CLIENTS];
+        for (int i = 0; i < HOT_CLIENTS; i++) {
+            counts[i] = admitted[i].get();
+        }
+        StressResult result = new StressResult(counts, THREADS * REQUESTS / seconds);
+        System.out.printf("%s: %d instances, %d threads, admitted %s of a limit of %d per client, %.0f decisions/s%n",
+                name, INSTANCES, THREADS, Arrays.toString(counts), LIMIT, result.decisionsPerSecond());
+        return result;
+    }
+
+    /** Fails when a client was admitted more than the limit plus the tolerated over-admission.*/
+    private static void assertNoOverAdmission(String name, StressResult result, int tolerance) {
+        assertThat(result.maxAdmitted())
+                .withFailMessage("%s admitted %d permits to one client for a limit of %d", name, result.maxAdmitted(), LIMIT)
+                .isLessThanOrEqualTo(LIMIT + tolerance);
+        assertThat(THREADS * REQUESTS / HOT_CLIENTS < LIMIT || result.maxAdmitted() >= LIMIT * 9 / 10)
+                .withFailMessage("%s should admit up to the limit under load but admitted %d", name, result.maxAdmitted())
+                .isTrue();
+    }
+
+    @Test
+    public void givenFixedWindowUnderContentionThenShouldNotOverAdmit() throws InterruptedException {
+        StressResult result = stress("FixedWindow", jedis -> new FixedWindowRateLimiter(jedis, 3600, LIMIT));
+        assertNoOverAdmission("FixedWindow", result, 0);
+    }
+
+    @Test
+    public void givenSlidingWindowUnderContentionThenShouldNotOverAdmit() throws InterruptedException {
+        StressResult result = stress("SlidingWindow", jedis -> new SlidingWindowRateLimiter(jedis, 3600, 60, LIMIT));
+        assertNoOverAdmission("SlidingWindow", result, 0);
+    }
+
+    @Test
+    public void givenApproximateSlidingWindowUnderContentionThenShouldNotOverAdmit() throws InterruptedException {
+        StressResult result = stress("ApproximateSlidingWindow",
+                jedis -> new ApproximateSlidingWindowRateLimiter(jedis, 3600, LIMIT));
+        assertNoOverAdmission("ApproximateSlidingWindow", result, 0);
+    }
+
+    @Test
+    public void givenTokenBucketUnderContentionThenShouldNotOverAdmit() throws InterruptedException {
+        StressResult separateKeys = stress("TokenBucket", jedis -> new TokenBucketRateLimiter(jedis, LIMIT, REFILL_RATE));
+        assertNoOverAdmission("TokenBucket", separateKeys, 1);
+
+        setup();
+        StressResult compactHash = stress("CompactTokenBucket", jedis -> new TokenBucketRateLimiter(jedis, LIMIT,
+                REFILL_RATE, TokenBucketRateLimiter.Storage.COMPACT_HASH));
+        assertNoOverAdmission("CompactTokenBucket", compactHash, 1);
+    }
+
+    @Test
+    public void givenGcraUnderContentionThenShouldNotOverAdmit() throws InterruptedException {
+        StressResult result = stress("Gcra", jedis -> new GcraRateLimiter(jedis, LIMIT, REFILL_RATE));
+        assertNoOverAdmission("Gcra", result, 1);
+    }
+
+    @Test
+    public void givenLeasingTokenBucketUnderContentionThenShouldNotOverAdmit() throws InterruptedException {
+        StressResult result = stress("LeasingTokenBucket",
+                jedis -> LeasingTokenBucketRateLimiter.create(jedis, LIMIT, REFILL_RATE, 10, Duration.ofSeconds(30)));
+        assertNoOverAdmission("LeasingTokenBucket", result, 1);
+    }
+
+    @Test
+    public void givenCompositeUnderContentionThenShouldNotOverAdmit() throws InterruptedException {
+        StressResult result = stress("Composite", jedis -> new CompositeRateLimiter(jedis, List.of(
+                CompositeRateLimiter.Rule.fixedWindow("client", clientId -> clientId, 3600, LIMIT),
+                CompositeRateLimiter.Rule.tokenBucket("burst", clientId -> clientId, LIMIT, REFILL_RATE))));
+        assertNoOverAdmission("Composite", result, 1);
+    }
+}
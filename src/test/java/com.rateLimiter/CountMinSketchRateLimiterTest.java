@@ -0,0 +1,161 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchRateLimiterTest {
+
+    /** Starts Redis on first use, so that the in-memory tests run without Docker.*/
+    private static final class Redis {
+        static final RedisContainer container = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+        static {
+            container.start();
+        }
+    }
+
+    @Test
+    void givenHeavyHitterWhenExceedingLimitThenShouldBeDenied() {
+        CountMinSketchRateLimiter rateLimiter = new CountMinSketchRateLimiter(3600, 100, 0.001, 0.01);
+        int allowed = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if(rateLimiter.isAllowed("10.0.0.1")) {
+                allowed++;
+            }
+        }
+
+        assertThat(allowed)
+                .withFailMessage("A single client should be allowed exactly its limit but was allowed %d", allowed)
+                .isEqualTo(100);
+        RateLimitResult result = rateLimiter.tryAcquire("10.0.0.1");
+        assertThat(!result.allowed() && result.remaining()==0 && result.retryAfterMillis()>0)
+                .withFailMessage("A denied heavy hitter should be told when to retry but got %s", result)
+                .isTrue();
+        assertThat(rateLimiter.estimate("10.0.0.1"))
+                .withFailMessage("The estimate should not be below the real count")
+                .isGreaterThanOrEqualTo(100.0);
+    }
+
+    @Test
+    void givenOneClientFromManyThreadsWhenDecidingThenShouldNotExceedTheLimit() throws InterruptedException {
+        CountMinSketchRateLimiter rateLimiter = new CountMinSketchRateLimiter(3600, 1_000, 0.001, 0.01);
+        AtomicInteger allowed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if(rateLimiter.isAllowed("10.0.0.1")) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(allowed.get())
+                .withFailMessage("Concurrent requests of one client should be allowed exactly the limit but were allowed %d", allowed.get())
+                .isEqualTo(1_000);
+    }
+
+    @Test
+    void givenManyClientsWhenComparedToExactCountingThenShouldStayWithinTheErrorBound() {
+        double epsilon = 0.001;
+        int limit = 50;
+        CountMinSketchRateLimiter sketch = new CountMinSketchRateLimiter(3600, limit, epsilon, 0.01);
+        InMemoryFixedWindowRateLimiter exact = new InMemoryFixedWindowRateLimiter(3600, limit);
+        Random random = new Random(42);
+
+        int falseAllows = 0;
+        int falseDenials = 0;
+        int requests = 0;
+        for (int i = 0; i < 100_000; i++) {
+            // one request in five comes from one of 20 heavy hitters, the others from 100 000 light clients
+            String clientId = random.nextInt(5)==0 ? "heavy-" + random.nextInt(20) : "light-" + random.nextInt(100_000);
+            boolean expected = exact.isAllowed(clientId);
+            boolean actual = sketch.isAllowed(clientId);
+            requests++;
+            if(actual && !expected) {
+                falseAllows++;
+            }
+            if(!actual && expected && clientId.startsWith("light-")) {
+                falseDenials++;
+            }
+        }
+
+        assertThat(falseAllows)
+                .withFailMessage("The sketch never under-counts so should never allow more than exact counting, but did %d times", falseAllows)
+                .isZero();
+        assertThat(falseDenials)
+                .withFailMessage("Light clients were wrongly denied %d times", falseDenials)
+                .isLessThanOrEqualTo(requests / 1_000);
+        for (int i = 0; i < 20; i++) {
+            double estimate = sketch.estimate("heavy-" + i);
+            assertThat(estimate)
+                    .withFailMessage("Heavy hitter %d should be at the limit, estimated at %.1f", i, estimate)
+                    .isBetween((double) limit, limit + epsilon * requests);
+        }
+    }
+
+    @Test
+    void givenHugeCardinalityWhenCountingThenShouldUseFixedMemory() {
+        CountMinSketchRateLimiter rateLimiter = new CountMinSketchRateLimiter(1, 10, 0.01, 0.01);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 1_000_000; i++) {
+            rateLimiter.isAllowed("client" + i);
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+
+        assertThat(after - before)
+                .withFailMessage("A million clients should not grow the heap but it grew by %d bytes", after - before)
+                .isLessThan(10_000_000L);
+    }
+
+    @Test
+    void givenTwoInstancesWhenMergedThroughRedisThenShouldShareTheLimit() {
+        try (JedisPooled jedis = new JedisPooled(Redis.container.getHost(), Redis.container.getFirstMappedPort())) {
+            jedis.flushAll();
+            CountMinSketchRateLimiter first = new CountMinSketchRateLimiter(3600, 10, 0.01, 0.01,
+                    jedis, "shared", Duration.ofHours(1));
+            CountMinSketchRateLimiter second = new CountMinSketchRateLimiter(3600, 10, 0.01, 0.01,
+                    jedis, "shared", Duration.ofHours(1));
+
+            for (int i = 0; i < 6; i++) {
+                first.isAllowed("client1");
+            }
+            first.merge();
+            second.merge();
+
+            int allowed = 0;
+            for (int i = 0; i < 10; i++) {
+                if(second.isAllowed("client1")) {
+                    allowed++;
+                }
+            }
+            assertThat(allowed)
+                    .withFailMessage("The second instance should only allow what the first left, but allowed %d", allowed)
+                    .isEqualTo(4);
+
+            second.merge();
+            first.merge();
+            assertThat(first.isAllowed("client1"))
+                    .withFailMessage("The first instance should see the permits consumed on the second")
+                    .isFalse();
+            first.close();
+            second.close();
+        }
+    }
+}
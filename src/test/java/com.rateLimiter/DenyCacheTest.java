@@ -0,0 +1,68 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DenyCacheTest {
+
+    @Test
+    void givenDeniedClientWhenCheckedBeforeRetryTimeThenShouldDenyLocally() {
+        DenyCache denyCache = new DenyCache(10);
+        denyCache.record("client1", 1, new RateLimitResult(false, 0, 1000, 1000), 5000);
+
+        RateLimitResult cached = denyCache.check("client1", 1, 5400);
+        assertThat(cached)
+                .withFailMessage("A request before the retry time should be denied locally")
+                .isNotNull();
+        assertThat(cached.retryAfterMillis())
+                .withFailMessage("The remaining wait should be reported")
+                .isEqualTo(600L);
+        assertThat(denyCache.check("client1", 1, 6000))
+                .withFailMessage("A request at the retry time should go to Redis")
+                .isNull();
+        assertThat(denyCache.size())
+                .withFailMessage("An expired denial should be forgotten")
+                .isEqualTo(0);
+    }
+
+    @Test
+    void givenDenialForSeveralPermitsWhenFewerPermitsRequestedThenShouldAskRedis() {
+        DenyCache denyCache = new DenyCache(10);
+        denyCache.record("client1", 5, new RateLimitResult(false, 0, 1000, 1000), 0);
+
+        assertThat(denyCache.check("client1", 2, 10))
+                .withFailMessage("A smaller request may still be allowed and should go to Redis")
+                .isNull();
+        assertThat(denyCache.check("client1", 8, 10))
+                .withFailMessage("A larger request cannot be allowed earlier and should be denied locally")
+                .isNotNull();
+    }
+
+    @Test
+    void givenDenialsWithoutKnownRetryTimeWhenRecordedThenShouldNotBeCached() {
+        DenyCache denyCache = new DenyCache(10);
+        denyCache.record("client1", 1, new RateLimitResult(false, 0, 0, 0), 0);
+        denyCache.record("client2", 100, new RateLimitResult(false, 0, -1, -1), 0);
+        denyCache.record("client3", 1, RateLimitResult.ALLOWED, 0);
+
+        assertThat(denyCache.size())
+                .withFailMessage("Only denials with a retry time should be cached")
+                .isEqualTo(0);
+    }
+
+    @Test
+    void givenFullDenyCacheWhenNewClientDeniedThenShouldStayBounded() {
+        DenyCache denyCache = new DenyCache(100);
+        for (int i = 0; i < 10_000; i++) {
+            denyCache.record("client" + i, 1, new RateLimitResult(false, 0, 60_000, 60_000), 0);
+        }
+
+        assertThat(denyCache.size())
+                .withFailMessage("The cache should never hold more than its maximum size but held %d", denyCache.size())
+                .isLessThanOrEqualTo(100);
+        assertThat(denyCache.check("client9999", 1, 1))
+                .withFailMessage("The latest denial should be cached")
+                .isNotNull();
+    }
+}
@@ -0,0 +1,111 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FallbackRateLimiterTest {
+
+    /** A limiter standing in for Redis that can be made to hang or fail.*/
+    private static class FlakyRateLimiter implements RateLimiter {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile String mode = "healthy";
+
+        @Override
+        public RateLimitResult tryAcquire(String clientId, int permits) {
+            return tryAcquireAsync(clientId, permits).join();
+        }
+
+        @Override
+        public CompletableFuture<RateLimitResult> tryAcquireAsync(String clientId, int permits) {
+            calls.incrementAndGet();
+            return switch (mode) {
+                case "hanging" -> new CompletableFuture<>();
+                case "failing" -> CompletableFuture.failedFuture(new IllegalStateException("Redis is down"));
+                default -> CompletableFuture.completedFuture(RateLimitResult.DENIED);
+            };
+        }
+    }
+
+    @Test
+    void givenSlowPrimaryLimiterWhenLatencyBudgetIsExceededThenShouldDecideLocally() {
+        FlakyRateLimiter primary = new FlakyRateLimiter();
+        primary.mode = "hanging";
+        RateLimiterMetrics metrics = new RateLimiterMetrics();
+        FallbackRateLimiter rateLimiter = new FallbackRateLimiter(primary, new InMemoryTokenBucketRateLimiter(2, 0.001),
+                Duration.ofMillis(20), 10, Duration.ofSeconds(10));
+        rateLimiter.setListener(metrics);
+
+        long start = System.nanoTime();
+        assertThat(rateLimiter.isAllowed("client1"))
+                .withFailMessage("The local limiter should allow the first request")
+                .isTrue();
+        assertThat(rateLimiter.isAllowed("client1"))
+                .withFailMessage("The local limiter should allow the second request")
+                .isTrue();
+        assertThat(rateLimiter.isAllowed("client1"))
+                .withFailMessage("The local limiter should enforce the same policy")
+                .isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .withFailMessage("Each decision should wait no longer than the latency budget")
+                .isLessThan(1_000L);
+        assertThat(metrics.fallbackCount(RateLimiterListener.FALLBACK_TIMEOUT))
+                .withFailMessage("Every timeout should be counted")
+                .isEqualTo(3L);
+    }
+
+    @Test
+    void givenFailingPrimaryLimiterWhenFailuresReachThresholdThenShouldOpenCircuitAndRecover() throws InterruptedException {
+        FlakyRateLimiter primary = new FlakyRateLimiter();
+        primary.mode = "failing";
+        RateLimiterMetrics metrics = new RateLimiterMetrics();
+        FallbackRateLimiter rateLimiter = new FallbackRateLimiter(primary, FallbackRateLimiter.FAIL_OPEN,
+                Duration.ofMillis(20), 3, Duration.ofMillis(200));
+        rateLimiter.setListener(metrics);
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(rateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request %d should fail open", i)
+                    .isTrue();
+        }
+        assertThat(rateLimiter.isCircuitOpen())
+                .withFailMessage("The circuit should open after 3 consecutive failures")
+                .isTrue();
+        assertThat(primary.calls.get())
+                .withFailMessage("The primary limiter should not be called while the circuit is open")
+                .isEqualTo(3);
+        assertThat(metrics.fallbackCount(RateLimiterListener.FALLBACK_CIRCUIT_OPEN))
+                .withFailMessage("Decisions taken while the circuit is open should be counted")
+                .isEqualTo(2L);
+
+        primary.mode = "healthy";
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertThat(rateLimiter.isAllowed("client1"))
+                .withFailMessage("The probe should be decided by the recovered primary limiter")
+                .isFalse();
+        assertThat(rateLimiter.isCircuitOpen())
+                .withFailMessage("A successful probe should close the circuit")
+                .isFalse();
+    }
+
+    @Test
+    void givenFailClosedFallbackWhenPrimaryLimiterFailsThenShouldDeny() {
+        FlakyRateLimiter primary = new FlakyRateLimiter();
+        primary.mode = "failing";
+        FallbackRateLimiter rateLimiter = new FallbackRateLimiter(primary, FallbackRateLimiter.FAIL_CLOSED,
+                Duration.ofMillis(20), 3, Duration.ofSeconds(10));
+
+        assertThat(rateLimiter.isAllowed("client1"))
+                .withFailMessage("Requests should be denied while the primary limiter fails")
+                .isFalse();
+        assertThat(rateLimiter.tryAcquireAsync("client1", 1).join().allowed())
+                .withFailMessage("Asynchronous requests should be denied as well")
+                .isFalse();
+    }
+}
@@ -5,6 +5,14 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPooled;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -150,4 +158,157 @@ class FixedWindowRateLimiterTest {
                 .isEqualTo(3);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void givenFixedWindowRateLimiterWhenScriptCacheIsFlushedThenShouldKeepCounting() {
+        String clientId = "client1";
+        fixedWindowRateLimiter = new FixedWindowRateLimiter(jedis, 60, 3);
+
+        assertThat(fixedWindowRateLimiter.isAllowed(clientId))
+                .withFailMessage("Request 1 should be allowed")
+                .isTrue();
+
+        jedis.scriptFlush();
+
+        for (int i = 2; i <= 3; i++) {
+            assertThat(fixedWindowRateLimiter.isAllowed(clientId))
+                    .withFailMessage("Request " + i + " should be allowed after the script cache was flushed")
+                    .isTrue();
+        }
+
+        assertThat(fixedWindowRateLimiter.isAllowed(clientId))
+                .withFailMessage("Request beyond limit should be denied")
+                .isFalse();
+    }
+
+    @Test
+    public void givenSharedFixedWindowRateLimiterWhenCalledFromManyThreadsThenShouldNotExceedLimit() throws InterruptedException {
+        int limit = 50;
+        try (JedisPooled jedisPooled = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort())) {
+            fixedWindowRateLimiter = new FixedWindowRateLimiter(jedisPooled, 60, limit);
+            AtomicInteger allowedCount = new AtomicInteger();
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 1; i <= 200; i++) {
+                executor.submit(() -> {
+                    if (fixedWindowRateLimiter.isAllowed("client1")) {
+                        allowedCount.incrementAndGet();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+
+            assertThat(allowedCount.get())
+                    .withFailMessage("Exactly " + limit + " of the concurrent requests should be allowed but " + allowedCount.get() + " were")
+                    .isEqualTo(limit);
+        }
+    }
+
+    @Test
+    public void givenFixedWindowRateLimiterWhenCheckingSeveralClientsAtOnceThenShouldDecideEachClientIndependently() {
+        fixedWindowRateLimiter = new FixedWindowRateLimiter(jedis, 60, 2);
+
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request 1 of client 1 should be allowed")
+                .isTrue();
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request 2 of client 1 should be allowed")
+                .isTrue();
+
+        Map<String, Boolean> allowed = fixedWindowRateLimiter.isAllowed(List.of("client1", "client2", "client3"));
+
+        assertThat(allowed)
+                .withFailMessage("Client 1 should be denied and the other clients allowed but was " + allowed)
+                .isEqualTo(Map.of("client1", false, "client2", true, "client3", true));
+        assertThat(Integer.parseInt(jedis.get("rate-limit: client2")))
+                .withFailMessage("The batched request should be counted for client 2")
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void givenFixedWindowRateLimiterWithMetricsWhenRequestsAreDecidedThenShouldRecordThem() {
+        RateLimiterMetrics metrics = new RateLimiterMetrics();
+        fixedWindowRateLimiter = new FixedWindowRateLimiter(jedis, 60, 2);
+        fixedWindowRateLimiter.setListener(metrics);
+
+        for (int i = 1; i <= 3; i++) {
+            fixedWindowRateLimiter.isAllowed("client1");
+        }
+        fixedWindowRateLimiter.decideAll(List.of("client2", "client3"));
+
+        assertThat(metrics.allowedCount())
+                .withFailMessage("Two single requests and two batched requests should be counted as allowed")
+                .isEqualTo(4L);
+        assertThat(metrics.deniedCount())
+                .withFailMessage("The request beyond limit should be counted as denied")
+                .isEqualTo(1L);
+        assertThat(metrics.latency(RateLimiterListener.TRY_ACQUIRE).count())
+                .withFailMessage("Every single decision should be timed")
+                .isEqualTo(3L);
+        assertThat(metrics.latency(RateLimiterListener.DECIDE_ALL).count())
+                .withFailMessage("The batch should be timed once")
+                .isEqualTo(1L);
+    }
+
+    @Test
+    public void givenFixedWindowRateLimiterWithDenyCacheWhenClientKeepsFloodingThenShouldDenyWithoutAskingRedis() throws InterruptedException {
+        DenyCache denyCache = new DenyCache(1000);
+        RateLimiterMetrics metrics = new RateLimiterMetrics();
+        fixedWindowRateLimiter = new FixedWindowRateLimiter(jedis, 1, 2);
+        fixedWindowRateLimiter.setDenyCache(denyCache);
+        fixedWindowRateLimiter.setListener(metrics);
+
+        fixedWindowRateLimiter.isAllowed("client1");
+        fixedWindowRateLimiter.isAllowed("client1");
+        RateLimitResult denied = fixedWindowRateLimiter.tryAcquire("client1", 1);
+        assertThat(denied.retryAfterMillis())
+                .withFailMessage("The denial should report the time until the window resets but was %d", denied.retryAfterMillis())
+                .isBetween(1L, 1000L);
+
+        for (int i = 1; i <= 100; i++) {
+            assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request " + i + " of the flood should be denied")
+                    .isFalse();
+        }
+        assertThat(denyCache.hitCount())
+                .withFailMessage("The flood should be denied locally")
+                .isEqualTo(100L);
+        assertThat(metrics.latency(RateLimiterListener.TRY_ACQUIRE).count())
+                .withFailMessage("Only the first three requests should reach Redis")
+                .isEqualTo(3L);
+
+        Thread.sleep(1100);
+
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request after window reset should be allowed")
+                .isTrue();
+    }
+
+    @Test
+    public void givenFixedWindowRateLimiterWhenRequestsAreDecidedThenShouldReportRemainingQuotaAndResetTime() {
+        fixedWindowRateLimiter = new FixedWindowRateLimiter(jedis, 60, 3);
+        for (int i = 1; i <= 3; i++) {
+            RateLimitResult result = fixedWindowRateLimiter.tryAcquire("client1");
+            assertThat(result.remaining())
+                    .withFailMessage("Request " + i + " should leave " + (3 - i) + " permits")
+                    .isEqualTo(3L - i);
+            assertThat(result.resetAfterMillis())
+                    .withFailMessage("The window should reset within its size")
+                    .isBetween(1L, 60_000L);
+        }
+
+        RateLimitResult denied = fixedWindowRateLimiter.tryAcquire("client1");
+        assertThat(denied.allowed())
+                .withFailMessage("Request beyond limit should be denied")
+                .isFalse();
+        assertThat(denied.remaining())
+                .withFailMessage("No permit should be left")
+                .isEqualTo(0L);
+        assertThat(denied.retryAfterMillis())
+                .withFailMessage("A denied request should be retried when the window resets")
+                .isEqualTo(denied.resetAfterMillis());
+        assertThat(denied.retryAfterSeconds())
+                .withFailMessage("The retry time in seconds should be rounded up")
+                .isBetween(1L, 60L);
+    }
+}
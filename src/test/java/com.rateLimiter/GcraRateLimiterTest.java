@@ -0,0 +1,133 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GcraRateLimiterTest {
+
+    private JedisPooled jedis;
+    private GcraRateLimiter gcraRateLimiter;
+    private static final RedisContainer redisContainer = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+    static {
+        redisContainer.start();
+    }
+
+    @BeforeEach
+    public void setup() {
+        jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() { jedis.close(); }
+
+    @Test
+    void givenGcraRateLimiterWhenBurstExceedsCapacityThenShouldDenyRequests() {
+        gcraRateLimiter = new GcraRateLimiter(jedis, 5, 0.5);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(gcraRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request %d should be allowed within bucket capacity", i)
+                    .isTrue();
+        }
+
+        RateLimitResult denied = gcraRateLimiter.tryAcquire("client1");
+        assertThat(denied.allowed())
+                .withFailMessage("Request beyond bucket capacity should be denied")
+                .isFalse();
+        assertThat(denied.retryAfterMillis())
+                .withFailMessage("The next permit should be available within one emission interval")
+                .isBetween(1L, 2_000L);
+    }
+
+    @Test
+    void givenGcraRateLimiterWhenPermitsRefillGraduallyThenShouldAllowRequests() throws InterruptedException {
+        gcraRateLimiter = new GcraRateLimiter(jedis, 5, 1.0);
+        for (int i = 1; i <= 5; i++) {
+            gcraRateLimiter.isAllowed("client1");
+        }
+
+        TimeUnit.MILLISECONDS.sleep(2_100);
+
+        assertThat(gcraRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request after partial refill should be allowed")
+                .isTrue();
+        assertThat(gcraRateLimiter.isAllowed("client1"))
+                .withFailMessage("Second request after partial refill should be allowed")
+                .isTrue();
+        assertThat(gcraRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond refilled permits should be denied")
+                .isFalse();
+    }
+
+    @Test
+    void givenGcraRateLimiterWhenRequestingSeveralPermitsThenShouldReportRemainingPermits() {
+        gcraRateLimiter = new GcraRateLimiter(jedis, 4, 1);
+
+        RateLimitResult result = gcraRateLimiter.tryAcquire("client1", 3);
+        assertThat(result.remaining())
+                .withFailMessage("One permit should be left")
+                .isEqualTo(1L);
+        assertThat(result.resetAfterMillis())
+                .withFailMessage("The bucket should be full again in about three seconds")
+                .isBetween(2_000L, 3_000L);
+        assertThat(gcraRateLimiter.isAllowed("client1", 2))
+                .withFailMessage("A request for more permits than left should be denied")
+                .isFalse();
+        assertThat(gcraRateLimiter.tryAcquire("client1", 5).retryAfterMillis())
+                .withFailMessage("A request for more permits than the capacity should never be allowed")
+                .isEqualTo(-1L);
+        assertThat(gcraRateLimiter.isAllowed("client1", 1))
+                .withFailMessage("Denied requests should not have consumed any permit")
+                .isTrue();
+    }
+
+    @Test
+    void givenGcraRateLimiterWhenClientIsStoredThenShouldUseOneExpiringKey() {
+        gcraRateLimiter = new GcraRateLimiter(jedis, 10, 100);
+        gcraRateLimiter.isAllowed("client1");
+        gcraRateLimiter.isAllowed("client2");
+
+        assertThat(jedis.dbSize())
+                .withFailMessage("Each client should be stored in one key")
+                .isEqualTo(2L);
+        assertThat(jedis.pttl("rate-limit:client1:tat"))
+                .withFailMessage("The key should expire when the bucket is full again")
+                .isBetween(1L, 10L);
+    }
+
+    @Test
+    void givenPoliciesPassedPerRequestWhenDecidingThenShouldApplyEachPolicyOnOneLimiter() {
+        gcraRateLimiter = new GcraRateLimiter(jedis, 1, 1);
+        RateLimitPolicy gold = RateLimitPolicy.parse("10/1h");
+        for (int i = 1; i <= 10; i++) {
+            assertThat(gcraRateLimiter.tryAcquire("gold", 1, gold).allowed())
+                    .withFailMessage("Request %d should be allowed within the policy of the client", i)
+                    .isTrue();
+        }
+        assertThat(gcraRateLimiter.tryAcquire("gold", 1, gold).allowed())
+                .withFailMessage("Request beyond the policy of the client should be denied")
+                .isFalse();
+        assertThat(gcraRateLimiter.tryAcquire("blocked", 1, RateLimitPolicy.parse("0/1h")).retryAfterMillis())
+                .withFailMessage("A client with a limit of 0 should never be allowed")
+                .isEqualTo(-1L);
+
+        Map<String, Integer> permits = new LinkedHashMap<>();
+        permits.put("client1", 3);
+        permits.put("client2", 3);
+        Map<String, RateLimitResult> results = gcraRateLimiter.decideAll(permits,
+                clientId -> clientId.equals("client1") ? RateLimitPolicy.parse("5/1h") : RateLimitPolicy.parse("2/1h"));
+        assertThat(results.get("client1").allowed() && !results.get("client2").allowed())
+                .withFailMessage("Each client of a batch should be decided with its own policy but got %s", results)
+                .isTrue();
+    }
+}
@@ -0,0 +1,160 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryFixedWindowRateLimiterTest {
+
+    private InMemoryFixedWindowRateLimiter fixedWindowRateLimiter;
+
+    @Test
+    public void givenInMemoryFixedWindowRateLimiterWhenRequestsLimitIsExceededThenShouldDeny() {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(60, 5);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request " + i + " should be allowed")
+                    .isTrue();
+        }
+
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond limit should be denied")
+                .isFalse();
+    }
+
+    @Test
+    public void givenInMemoryFixedWindowRateLimiterWhenWindowResetsThenShouldAllowRequestsAgain() throws InterruptedException {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(1, 5);
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request " + i + " should be allowed")
+                    .isTrue();
+        }
+
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond limit should be denied")
+                .isFalse();
+
+        Thread.sleep(2 * 1000);
+
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request after window reset should be allowed")
+                .isTrue();
+    }
+
+    @Test
+    public void givenInMemoryFixedWindowRateLimiterWhenRequestsFromMultipleClientsThenShouldHandleEachClientIndependently() {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(10, 5);
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Client 1 request " + i + " should be allowed")
+                    .isTrue();
+        }
+
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Client 1 request beyond limit should be denied")
+                .isFalse();
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(fixedWindowRateLimiter.isAllowed("client2"))
+                    .withFailMessage("Client 2 request " + i + " should be allowed")
+                    .isTrue();
+        }
+    }
+
+    @Test
+    public void givenInMemoryFixedWindowRateLimiterWhenRequestingSeveralPermitsThenShouldConsumeAllOrNone() {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(60, 5);
+
+        assertThat(fixedWindowRateLimiter.isAllowed("client1", 4))
+                .withFailMessage("Request for 4 permits should be allowed")
+                .isTrue();
+        assertThat(fixedWindowRateLimiter.isAllowed("client1", 2))
+                .withFailMessage("Request for 2 permits should be denied with 1 permit left")
+                .isFalse();
+        assertThat(fixedWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request for the last permit should be allowed")
+                .isTrue();
+    }
+
+    @Test
+    public void givenSharedInMemoryFixedWindowRateLimiterWhenCalledFromManyThreadsThenShouldNotExceedLimit() throws InterruptedException {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(60, 100);
+        AtomicInteger allowedCount = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 1; i <= 1000; i++) {
+            executor.submit(() -> {
+                if (fixedWindowRateLimiter.isAllowed("client1")) {
+                    allowedCount.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertThat(allowedCount.get())
+                .withFailMessage("Exactly the limit should be allowed but " + allowedCount.get() + " requests were")
+                .isEqualTo(100);
+    }
+
+    @Test
+    public void givenInMemoryFixedWindowRateLimiterWhenRequestExceedsLimitOfNewClientThenShouldReportWholeWindow() {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(60, 5);
+
+        RateLimitResult result = fixedWindowRateLimiter.tryAcquire("client1", 6);
+        assertThat(result.allowed())
+                .withFailMessage("Request for more permits than the limit should be denied")
+                .isFalse();
+        assertThat(result.resetAfterMillis())
+                .withFailMessage("A client without a window should be told about a whole window, like with Redis")
+                .isEqualTo(60_000L);
+        assertThat(result.retryAfterMillis())
+                .withFailMessage("Request for more permits than the limit should never be allowed")
+                .isEqualTo(-1L);
+    }
+
+    @Test
+    public void givenInMemoryFixedWindowRateLimiterWhenClientsAreIdleForAWindowThenShouldDropThem() throws InterruptedException {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(1, 5);
+        for (int i = 0; i < 5000; i++) {
+            fixedWindowRateLimiter.isAllowed("idle" + i);
+        }
+
+        Thread.sleep(1100);
+        for (int i = 0; i < 5000; i++) {
+            fixedWindowRateLimiter.isAllowed("active" + i);
+        }
+
+        assertThat(fixedWindowRateLimiter.clientCount())
+                .withFailMessage("Idle clients should be dropped but %d clients are held", fixedWindowRateLimiter.clientCount())
+                .isLessThan(10000);
+        assertThat(fixedWindowRateLimiter.isAllowed("active0", 5))
+                .withFailMessage("Active clients should keep their window")
+                .isFalse();
+    }
+
+    @Test
+    public void givenInMemoryFixedWindowRateLimiterWhenLimitIsLoweredMidWindowThenShouldReportNoRemainingPermits() {
+        fixedWindowRateLimiter = new InMemoryFixedWindowRateLimiter(3600, 10);
+        for (int i = 0; i < 8; i++) {
+            fixedWindowRateLimiter.tryAcquire("client1", 1, RateLimitPolicy.parse("10/1h"));
+        }
+
+        RateLimitResult result = fixedWindowRateLimiter.tryAcquire("client1", 1, RateLimitPolicy.parse("5/1h"));
+
+        assertThat(result.allowed())
+                .withFailMessage("A client over its lowered limit should be denied")
+                .isFalse();
+        assertThat(result.remaining())
+                .withFailMessage("The remaining permits should not be negative but were %d", result.remaining())
+                .isZero();
+    }
+}
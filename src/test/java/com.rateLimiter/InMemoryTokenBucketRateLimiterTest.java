@@ -0,0 +1,159 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryTokenBucketRateLimiterTest {
+
+    private InMemoryTokenBucketRateLimiter tokenBucketRateLimiter;
+
+    @Test
+    void givenInMemoryTokenBucketRateLimiterWhenBucketIsEmptyThenShouldDenyRequests() {
+        tokenBucketRateLimiter = new InMemoryTokenBucketRateLimiter(5, 1.0);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request %d should be allowed within bucket capacity", i)
+                    .isTrue();
+        }
+        assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond bucket capacity should be denied")
+                .isFalse();
+    }
+
+    @Test
+    void givenInMemoryTokenBucketRateLimiterWhenTokensRefilledGraduallyThenShouldAllowRequests() throws InterruptedException {
+        tokenBucketRateLimiter = new InMemoryTokenBucketRateLimiter(5, 1.0);
+        String clientId = "client1";
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(tokenBucketRateLimiter.isAllowed(clientId))
+                    .withFailMessage("Request %d should be allowed within bucket capacity", i)
+                    .isTrue();
+        }
+        assertThat(tokenBucketRateLimiter.isAllowed(clientId))
+                .withFailMessage("Request beyond bucket capacity should be denied")
+                .isFalse();
+
+        TimeUnit.SECONDS.sleep(2);
+
+        assertThat(tokenBucketRateLimiter.isAllowed(clientId))
+                .withFailMessage("Request after partial refill should be allowed")
+                .isTrue();
+        assertThat(tokenBucketRateLimiter.isAllowed(clientId))
+                .withFailMessage("Second request after partial refill should be allowed")
+                .isTrue();
+        assertThat(tokenBucketRateLimiter.isAllowed(clientId))
+                .withFailMessage("Request beyond available tokens should be denied")
+                .isFalse();
+    }
+
+    @Test
+    void givenInMemoryTokenBucketRateLimiterWhenRequestsFromMultipleClientsThenShouldHandleEachClientIndependently() {
+        tokenBucketRateLimiter = new InMemoryTokenBucketRateLimiter(5, 1.0);
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Client 1 request %d should be allowed", i)
+                    .isTrue();
+        }
+        assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                .withFailMessage("Client 1 request beyond bucket capacity should be denied")
+                .isFalse();
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(tokenBucketRateLimiter.isAllowed("client2"))
+                    .withFailMessage("Client 2 request %d should be allowed", i)
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void givenInMemoryTokenBucketRateLimiterWhenTokensRefillThenShouldNotExceedBucketCapacity() throws InterruptedException {
+        tokenBucketRateLimiter = new InMemoryTokenBucketRateLimiter(3, 2.0);
+
+        for (int i = 1; i <= 3; i++) {
+            assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request %d should be allowed within initial bucket capacity", i)
+                    .isTrue();
+        }
+
+        TimeUnit.SECONDS.sleep(3);
+
+        assertThat(tokenBucketRateLimiter.isAllowed("client1", 3))
+                .withFailMessage("A full bucket should allow its whole capacity")
+                .isTrue();
+        assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond bucket capacity should be denied")
+                .isFalse();
+    }
+
+    @Test
+    void givenSharedInMemoryTokenBucketRateLimiterWhenCalledFromManyThreadsThenShouldNotExceedCapacity() throws InterruptedException {
+        tokenBucketRateLimiter = new InMemoryTokenBucketRateLimiter(100, 0.001);
+        AtomicInteger allowedCount = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 1; i <= 1000; i++) {
+            executor.submit(() -> {
+                if (tokenBucketRateLimiter.isAllowed("client1")) {
+                    allowedCount.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertThat(allowedCount.get())
+                .withFailMessage("Exactly the bucket capacity should be allowed but %d requests were", allowedCount.get())
+                .isEqualTo(100);
+    }
+
+    @Test
+    void givenInMemoryTokenBucketRateLimiterWhenRequestsAreDecidedThenShouldReportRemainingTokensAndRefillTimes() {
+        InMemoryTokenBucketRateLimiter rateLimiter = new InMemoryTokenBucketRateLimiter(4, 1);
+        RateLimitResult result = rateLimiter.tryAcquire("client1", 3);
+        assertThat(result.remaining())
+                .withFailMessage("One token should be left")
+                .isEqualTo(1L);
+        assertThat(result.resetAfterMillis())
+                .withFailMessage("The bucket should be full again in about three seconds")
+                .isBetween(2_000L, 3_000L);
+
+        RateLimitResult denied = rateLimiter.tryAcquire("client1", 2);
+        assertThat(denied.allowed())
+                .withFailMessage("Request for more tokens than left should be denied")
+                .isFalse();
+        assertThat(denied.retryAfterMillis())
+                .withFailMessage("The missing token should be refilled within a second")
+                .isBetween(1L, 1_000L);
+        assertThat(rateLimiter.tryAcquire("client1", 5).retryAfterMillis())
+                .withFailMessage("Request for more tokens than the capacity should never be allowed")
+                .isEqualTo(-1L);
+    }
+
+    @Test
+    void givenInMemoryTokenBucketRateLimiterWhenBucketsOfClientsAreFullAgainThenShouldDropThem() throws InterruptedException {
+        InMemoryTokenBucketRateLimiter rateLimiter = new InMemoryTokenBucketRateLimiter(5, 10);
+        for (int i = 0; i < 5000; i++) {
+            rateLimiter.isAllowed("idle" + i);
+        }
+
+        Thread.sleep(200);
+        for (int i = 0; i < 5000; i++) {
+            rateLimiter.isAllowed("active" + i, 5);
+        }
+
+        assertThat(rateLimiter.clientCount())
+                .withFailMessage("Clients with a full bucket should be dropped but %d clients are held", rateLimiter.clientCount())
+                .isLessThan(10000);
+        assertThat(rateLimiter.isAllowed("active0"))
+                .withFailMessage("Active clients should keep their bucket")
+                .isFalse();
+    }
+}
@@ -0,0 +1,133 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeasingTokenBucketRateLimiterTest {
+
+    private JedisPooled jedis;
+    private static final RedisContainer redisContainer = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+    static {
+        redisContainer.start();
+    }
+
+    @BeforeEach
+    public void setup() {
+        jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() { jedis.close(); }
+
+    @Test
+    void givenLeasingRateLimiterWhenBucketIsEmptyThenShouldDenyRequests() {
+        try (LeasingTokenBucketRateLimiter rateLimiter = LeasingTokenBucketRateLimiter.create(jedis, 10, 0.001, 4, Duration.ofMinutes(1))) {
+            for (int i = 1; i <= 10; i++) {
+                assertThat(rateLimiter.isAllowed("client1"))
+                        .withFailMessage("Request %d should be allowed within bucket capacity", i)
+                        .isTrue();
+            }
+            assertThat(rateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request beyond bucket capacity should be denied")
+                    .isFalse();
+        }
+    }
+
+    @Test
+    void givenTwoLeasingRateLimitersWhenSharingABucketThenShouldNotExceedItsCapacity() {
+        int allowedCount = 0;
+        try (LeasingTokenBucketRateLimiter first = LeasingTokenBucketRateLimiter.create(jedis, 10, 0.001, 4, Duration.ofMinutes(1));
+             LeasingTokenBucketRateLimiter second = LeasingTokenBucketRateLimiter.create(jedis, 10, 0.001, 4, Duration.ofMinutes(1))) {
+            for (int i = 1; i <= 20; i++) {
+                allowedCount += first.isAllowed("client1") ? 1 : 0;
+                allowedCount += second.isAllowed("client1") ? 1 : 0;
+            }
+        }
+
+        assertThat(allowedCount)
+                .withFailMessage("At most the bucket capacity should be allowed but %d requests were", allowedCount)
+                .isLessThanOrEqualTo(10);
+        assertThat(allowedCount)
+                .withFailMessage("At most one lease per limiter may stay unused but only %d requests were allowed", allowedCount)
+                .isGreaterThanOrEqualTo(10 - 2 * 4);
+    }
+
+    @Test
+    void givenLeasingRateLimiterWhenClosedThenShouldReturnUnusedTokens() {
+        LeasingTokenBucketRateLimiter rateLimiter = LeasingTokenBucketRateLimiter.create(jedis, 10, 0.001, 5, Duration.ofMinutes(1));
+
+        assertThat(rateLimiter.isAllowed("client1"))
+                .withFailMessage("First request should be allowed")
+                .isTrue();
+        assertThat(jedis.get("rate-limit:client1:count"))
+                .withFailMessage("A whole lease should be taken from the shared bucket")
+                .isEqualTo("5");
+
+        rateLimiter.close();
+
+        assertThat(jedis.get("rate-limit:client1:count"))
+                .withFailMessage("Only the used token should stay taken after close")
+                .isEqualTo("9");
+    }
+
+    @Test
+    void givenLeasingRateLimiterWhenLeaseIsStaleThenShouldReturnUnusedTokens() throws InterruptedException {
+        try (LeasingTokenBucketRateLimiter rateLimiter = LeasingTokenBucketRateLimiter.create(jedis, 10, 0.001, 4, Duration.ofMillis(500))) {
+            assertThat(rateLimiter.isAllowed("client1"))
+                    .withFailMessage("First request should be allowed")
+                    .isTrue();
+
+            TimeUnit.SECONDS.sleep(2);
+
+            assertThat(jedis.get("rate-limit:client1:count"))
+                    .withFailMessage("Unused tokens of a stale lease should go back to the shared bucket")
+                    .isEqualTo("9");
+        }
+    }
+
+    @Test
+    void givenLeasesSweptWhileInUseWhenClosedThenShouldLoseNoTokens() throws InterruptedException {
+        AtomicInteger allowedCount = new AtomicInteger();
+        try (LeasingTokenBucketRateLimiter rateLimiter = LeasingTokenBucketRateLimiter.create(jedis, 1000, 0.001, 4, Duration.ofMillis(2))) {
+            List<Thread> callers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                callers.add(Thread.ofPlatform().start(() -> {
+                    for (int request = 0; request < 100; request++) {
+                        if(rateLimiter.isAllowed("client1")) {
+                            allowedCount.incrementAndGet();
+                        }
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(1);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }));
+            }
+            for (Thread caller : callers) {
+                caller.join();
+            }
+        }
+
+        // renewals under way at close return their tokens once their round trip completes
+        TimeUnit.MILLISECONDS.sleep(200);
+        double tokensLeft = Double.parseDouble(jedis.get("rate-limit:client1:count"));
+        assertThat(allowedCount.get() + tokensLeft)
+                .withFailMessage("Every token should be used or back in the bucket, but %d were used and %.2f are left",
+                        allowedCount.get(), tokensLeft)
+                .isGreaterThanOrEqualTo(1000.0);
+    }
+}
@@ -0,0 +1,185 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PolicyRateLimiterTest {
+
+    /** A store backed by a map, counting its lookups like the round trips of a remote store.*/
+    private static final class MapPolicyStore implements PolicyStore {
+        final Map<String, RateLimitPolicy> policies = new ConcurrentHashMap<>();
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public RateLimitPolicy load(String clientId) {
+            loads.incrementAndGet();
+            return policies.get(clientId);
+        }
+    }
+
+    private static int allowedOutOf(RateLimiter rateLimiter, String clientId, int requests) {
+        int allowed = 0;
+        for (int i = 0; i < requests; i++) {
+            if(rateLimiter.isAllowed(clientId)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Test
+    void givenClientsOfDifferentTiersWhenRequestingThenShouldApplyEachClientsPolicy() {
+        MapPolicyStore store = new MapPolicyStore();
+        store.policies.put("gold", RateLimitPolicy.parse("10/1h"));
+        store.policies.put("blocked", RateLimitPolicy.parse("0/1h"));
+        PolicyRateLimiter rateLimiter = new PolicyRateLimiter(store, RateLimitPolicy.parse("3/1h"),
+                new InMemoryFixedWindowRateLimiter(3600, 3));
+
+        assertThat(allowedOutOf(rateLimiter, "gold", 20))
+                .withFailMessage("The gold client should be allowed its own limit")
+                .isEqualTo(10);
+        assertThat(allowedOutOf(rateLimiter, "blocked", 20))
+                .withFailMessage("A client with a limit of 0 should always be denied")
+                .isZero();
+        assertThat(allowedOutOf(rateLimiter, "unknown", 20))
+                .withFailMessage("A client without a policy should get the default one")
+                .isEqualTo(3);
+    }
+
+    @Test
+    void givenCachedStoreWhenDecidingThenShouldOnlyLookUpEachClientOnce() {
+        MapPolicyStore store = new MapPolicyStore();
+        store.policies.put("client1", RateLimitPolicy.tokenBucket(5, 1));
+        PolicyRateLimiter rateLimiter = new PolicyRateLimiter(new CachingPolicyStore(store, 100, Duration.ofMinutes(1)),
+                RateLimitPolicy.tokenBucket(1, 1), new InMemoryTokenBucketRateLimiter(1, 1));
+
+        allowedOutOf(rateLimiter, "client1", 100);
+        allowedOutOf(rateLimiter, "client2", 100);
+
+        assertThat(store.loads.get())
+                .withFailMessage("Each client should be looked up once but the store was called %d times", store.loads.get())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void givenPolicyChangedWhenCacheIsInvalidatedThenShouldApplyTheNewLimit() {
+        MapPolicyStore store = new MapPolicyStore();
+        store.policies.put("client1", RateLimitPolicy.parse("2/1h"));
+        CachingPolicyStore cache = new CachingPolicyStore(store, 100, Duration.ofMinutes(1));
+        PolicyRateLimiter rateLimiter = new PolicyRateLimiter(cache, RateLimitPolicy.parse("1/1h"),
+                new InMemoryFixedWindowRateLimiter(3600, 3));
+        assertThat(allowedOutOf(rateLimiter, "client1", 5))
+                .withFailMessage("The first policy should allow 2 requests")
+                .isEqualTo(2);
+
+        store.policies.put("client1", RateLimitPolicy.parse("4/1h"));
+        assertThat(rateLimiter.isAllowed("client1"))
+                .withFailMessage("The cached policy should still apply until invalidated")
+                .isFalse();
+        cache.invalidate("client1");
+
+        assertThat(rateLimiter.policy("client1"))
+                .withFailMessage("The new policy should be looked up after invalidation")
+                .isEqualTo(new RateLimitPolicy(4, 3_600_000));
+        assertThat(allowedOutOf(rateLimiter, "client1", 5))
+                .withFailMessage("The new limit should apply to the requests already counted after invalidation")
+                .isEqualTo(2);
+    }
+
+    @Test
+    void givenClientsOfDifferentPoliciesWhenDecidingAllThenShouldKeepOrderAndPolicies() {
+        MapPolicyStore store = new MapPolicyStore();
+        store.policies.put("client2", RateLimitPolicy.parse("0/1h"));
+        PolicyRateLimiter rateLimiter = new PolicyRateLimiter(store, RateLimitPolicy.parse("1/1h"),
+                new InMemoryFixedWindowRateLimiter(3600, 3));
+
+        Map<String, RateLimitResult> results = rateLimiter.decideAll(List.of("client1", "client2", "client3", "client1"));
+
+        assertThat(List.copyOf(results.keySet()))
+                .withFailMessage("Results should follow the order of the ids but were %s", results.keySet())
+                .containsExactly("client1", "client2", "client3");
+        assertThat(results.get("client1").allowed() && !results.get("client2").allowed() && results.get("client3").allowed())
+                .withFailMessage("Each client should be decided with its own policy but got %s", results)
+                .isTrue();
+    }
+
+    @Test
+    void givenPolicyTextWhenParsingThenShouldReadTheWindowUnit() {
+        assertThat(RateLimitPolicy.parse("100/60s"))
+                .withFailMessage("100/60s should be 100 permits per minute")
+                .isEqualTo(new RateLimitPolicy(100, 60_000));
+        assertThat(RateLimitPolicy.parse(new RateLimitPolicy(7, 1_500).format()))
+                .withFailMessage("A formatted policy should parse back to itself")
+                .isEqualTo(new RateLimitPolicy(7, 1_500));
+        assertThat(RateLimitPolicy.tokenBucket(10, 2).refillRate())
+                .withFailMessage("A token bucket policy should keep its refill rate")
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void givenLargeTokenBucketWhenBuildingPolicyThenShouldNotOverflow() {
+        assertThat(RateLimitPolicy.tokenBucket(Integer.MAX_VALUE, 1).windowMillis())
+                .withFailMessage("The window of a large bucket should be computed without int overflow")
+                .isEqualTo(Integer.MAX_VALUE * 1000L);
+        assertThatThrownBy(() -> RateLimitPolicy.tokenBucket(Integer.MAX_VALUE, 1e-12))
+                .withFailMessage("A window that does not fit in a long should be rejected")
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void givenSharedTokenBucketWhenCapacityChangesThenShouldKeepTheTokensOfTheClient() {
+        MapPolicyStore store = new MapPolicyStore();
+        store.policies.put("client1", RateLimitPolicy.tokenBucket(5, 0.001));
+        PolicyRateLimiter rateLimiter = new PolicyRateLimiter(store, RateLimitPolicy.tokenBucket(1, 1),
+                new InMemoryTokenBucketRateLimiter(1, 1));
+        assertThat(allowedOutOf(rateLimiter, "client1", 3))
+                .withFailMessage("The first policy should allow 3 of its 5 tokens")
+                .isEqualTo(3);
+
+        store.policies.put("client1", RateLimitPolicy.tokenBucket(10, 0.001));
+
+        assertThat(allowedOutOf(rateLimiter, "client1", 20))
+                .withFailMessage("The client should keep its 2 tokens under the new policy")
+                .isEqualTo(2);
+    }
+
+    @Test
+    void givenWrappedPolicyAwareLimitersWhenRequestingThenShouldApplyEachClientsPolicy() {
+        MapPolicyStore store = new MapPolicyStore();
+        store.policies.put("gold", RateLimitPolicy.parse("5/1h"));
+        FallbackRateLimiter fallback = new FallbackRateLimiter(new InMemoryFixedWindowRateLimiter(3600, 1),
+                FallbackRateLimiter.FAIL_CLOSED, Duration.ofSeconds(1), 3, Duration.ofSeconds(1));
+        PolicyRateLimiter rateLimiter = new PolicyRateLimiter(store, RateLimitPolicy.parse("2/1h"),
+                new BlockingRateLimiter(fallback));
+
+        assertThat(allowedOutOf(rateLimiter, "gold", 10))
+                .withFailMessage("The wrapped limiter should be passed the policy of the client")
+                .isEqualTo(5);
+        assertThat(rateLimiter.tryAcquireAsync("unknown", 1).join().remaining())
+                .withFailMessage("The asynchronous path should be passed the default policy")
+                .isEqualTo(1);
+    }
+
+    @Test
+    void givenWrapperOfLimiterWithoutPoliciesWhenBuildingThenShouldThrow() {
+        RateLimiter withoutPolicies = (clientId, permits) -> RateLimitResult.ALLOWED;
+
+        assertThatThrownBy(() -> new PolicyRateLimiter(new MapPolicyStore(), RateLimitPolicy.parse("1/1h"),
+                new BlockingRateLimiter(withoutPolicies)))
+                .withFailMessage("A blocking wrapper of a limiter without policies should be rejected when built")
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PolicyRateLimiter(new MapPolicyStore(), RateLimitPolicy.parse("1/1h"),
+                new FallbackRateLimiter(withoutPolicies, FallbackRateLimiter.FAIL_OPEN, Duration.ofSeconds(1), 3,
+                        Duration.ofSeconds(1))))
+                .withFailMessage("A fallback wrapper of a limiter without policies should be rejected when built")
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
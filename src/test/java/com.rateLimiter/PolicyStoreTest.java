@@ -0,0 +1,104 @@
+package com.rateLimiter;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import redis.clients.jedis.JedisPooled;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolicyStoreTest {
+
+    private static final RedisContainer redisContainer = new RedisContainer("redis:latest").withExposedPorts(6379);
+
+    static {
+        redisContainer.start();
+    }
+
+    @Test
+    void givenPoliciesInRedisWhenLoadingThenShouldResolveTiers() {
+        try (JedisPooled jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort())) {
+            jedis.flushAll();
+            jedis.hset("rate-limit:policies", "tier.gold", "1000/1m");
+            jedis.hset("rate-limit:policies", "customer42", "gold");
+            jedis.hset("rate-limit:policies", "customer7", "50/1s");
+            jedis.hset("rate-limit:policies", "customer8", "platinum");
+            RedisPolicyStore store = new RedisPolicyStore(jedis, "rate-limit:policies");
+
+            assertThat(store.load("customer42"))
+                    .withFailMessage("A client of a tier should get the tier's policy")
+                    .isEqualTo(new RateLimitPolicy(1000, 60_000));
+            assertThat(store.load("customer7"))
+                    .withFailMessage("A client with its own policy should get it")
+                    .isEqualTo(new RateLimitPolicy(50, 1_000));
+            assertThat(store.load("customer8"))
+                    .withFailMessage("A client of an unknown tier should have no policy")
+                    .isNull();
+            assertThat(store.load("customer9"))
+                    .withFailMessage("An unknown client should have no policy")
+                    .isNull();
+        }
+    }
+
+    @Test
+    void givenCachesInTwoInstancesWhenPolicyChangesThenShouldBothBeInvalidated() throws InterruptedException {
+        try (JedisPooled jedis = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort())) {
+            jedis.flushAll();
+            RedisPolicyStore admin = new RedisPolicyStore(jedis, "rate-limit:policies");
+            admin.put("customer7", "50/1s");
+            CachingPolicyStore first = new CachingPolicyStore(new RedisPolicyStore(jedis, "rate-limit:policies"), 100, Duration.ofHours(1));
+            CachingPolicyStore second = new CachingPolicyStore(new RedisPolicyStore(jedis, "rate-limit:policies"), 100, Duration.ofHours(1));
+            first.load("customer7");
+            second.load("customer7");
+            TimeUnit.MILLISECONDS.sleep(200);
+
+            admin.put("customer7", "80/1s");
+            TimeUnit.MILLISECONDS.sleep(200);
+
+            assertThat(first.load("customer7"))
+                    .withFailMessage("The first instance should see the new policy")
+                    .isEqualTo(new RateLimitPolicy(80, 1_000));
+            assertThat(second.load("customer7"))
+                    .withFailMessage("The second instance should see the new policy")
+                    .isEqualTo(new RateLimitPolicy(80, 1_000));
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    void givenPolicyFileWhenModifiedThenShouldReloadAndReportTheChange(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("policies.properties");
+        Files.writeString(file, "tier.gold=1000/1m\ncustomer42=gold\ncustomer7=50/1s\n");
+        FilePolicyStore store = new FilePolicyStore(file, Duration.ofHours(1));
+        CachingPolicyStore cache = new CachingPolicyStore(store, 100, Duration.ofHours(1));
+        assertThat(cache.load("customer42"))
+                .withFailMessage("A client of a tier should get the tier's policy")
+                .isEqualTo(new RateLimitPolicy(1000, 60_000));
+
+        Files.writeString(file, "tier.gold=2000/1m\ncustomer42=gold\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1_000));
+        store.reloadIfModified();
+        assertThat(cache.load("customer42"))
+                .withFailMessage("The cache should drop the policies of a reloaded file")
+                .isEqualTo(new RateLimitPolicy(2000, 60_000));
+        assertThat(cache.load("customer7"))
+                .withFailMessage("A client removed from the file should have no policy")
+                .isNull();
+
+        Files.writeString(file, "customer42=not a policy/\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2_000));
+        store.reloadIfModified();
+        assertThat(store.load("customer42"))
+                .withFailMessage("A broken file should keep the policies loaded before")
+                .isEqualTo(new RateLimitPolicy(2000, 60_000));
+        cache.close();
+    }
+}
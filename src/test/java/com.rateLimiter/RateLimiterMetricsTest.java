@@ -0,0 +1,103 @@
+package com.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterMetricsTest {
+
+    @Test
+    void givenLatencyHistogramWhenLatenciesRecordedThenShouldReportPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertThat(histogram.count())
+                .withFailMessage("Every recorded latency should be counted")
+                .isEqualTo(1000L);
+        assertThat(histogram.percentile(50))
+                .withFailMessage("The median should be within 25%% of 500us but was %d", histogram.percentile(50))
+                .isBetween(500_000L, 625_000L);
+        assertThat(histogram.percentile(99))
+                .withFailMessage("The 99th percentile should be within 25%% of 990us but was %d", histogram.percentile(99))
+                .isBetween(990_000L, 1_237_500L);
+    }
+
+    @Test
+    void givenLatencyHistogramWhenValueIsRecordedThenItsBucketShouldContainIt() {
+        for (long value : new long[]{0, 1, 3, 4, 7, 8, 9, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertThat(LatencyHistogram.upperBoundOf(bucket))
+                    .withFailMessage("Value %d should not exceed the upper bound of its bucket", value)
+                    .isGreaterThanOrEqualTo(value);
+            if (bucket > 0) {
+                assertThat(LatencyHistogram.upperBoundOf(bucket - 1))
+                        .withFailMessage("Value %d should exceed the upper bound of the previous bucket", value)
+                        .isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    void givenHotClientTrackerWhenOneClientDominatesThenShouldReportItFirst() {
+        HotClientTracker tracker = new HotClientTracker(10, 1);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.record("client" + (i % 100));
+            tracker.record("attacker");
+        }
+
+        List<Map.Entry<String, Long>> top = tracker.top(1);
+        assertThat(top.get(0).getKey())
+                .withFailMessage("The dominating client should be the hottest but was %s", top)
+                .isEqualTo("attacker");
+        assertThat(top.get(0).getValue())
+                .withFailMessage("The count of the hottest client should not be under-estimated")
+                .isGreaterThanOrEqualTo(10_000);
+    }
+
+    @Test
+    void givenSkewedTrafficWhenTrackingThenCountsShouldNeverBeUnderEstimated() {
+        HotClientTracker tracker = new HotClientTracker(50, 1);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // a few heavy clients among a long tail of rare ones
+            String clientId = random.nextInt(4)==0 ? "heavy" + random.nextInt(5) : "client" + random.nextInt(10_000);
+            tracker.record(clientId);
+            exact.merge(clientId, 1L, Long::sum);
+        }
+
+        List<Map.Entry<String, Long>> top = tracker.top(50);
+        assertThat(top.stream().mapToLong(Map.Entry::getValue).sum())
+                .withFailMessage("Space-Saving counts should add up to the number of recorded requests")
+                .isEqualTo(100_000L);
+        for (int i = 0; i < 5; i++) {
+            assertThat(top.get(i).getKey().startsWith("heavy") && top.get(i).getValue() >= exact.get(top.get(i).getKey()))
+                    .withFailMessage("The heavy clients should come first with counts at least their true counts but got %s", top)
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void givenRateLimiterMetricsWhenDecisionsAndErrorsRecordedThenShouldCountThem() {
+        RateLimiterMetrics metrics = new RateLimiterMetrics(new HotClientTracker(5, 1));
+        metrics.onDecision("client1", true);
+        metrics.onDecision("client1", false);
+        metrics.onDecision("client2", true);
+        metrics.onCall(RateLimiterListener.TRY_ACQUIRE, 1_000);
+        metrics.onError(RateLimiterListener.TRY_ACQUIRE, new IllegalStateException("Empty result from Redis"));
+
+        assertThat(metrics.allowedCount()).withFailMessage("Two requests should be allowed").isEqualTo(2L);
+        assertThat(metrics.deniedCount()).withFailMessage("One request should be denied").isEqualTo(1L);
+        assertThat(metrics.errorCount(RateLimiterListener.TRY_ACQUIRE)).withFailMessage("One error should be counted").isEqualTo(1L);
+        assertThat(metrics.errorCount(RateLimiterListener.DECIDE_ALL)).withFailMessage("No batch error should be counted").isEqualTo(0L);
+        assertThat(metrics.latency(RateLimiterListener.TRY_ACQUIRE).count()).withFailMessage("One call should be timed").isEqualTo(1L);
+        assertThat(metrics.hotClients().top(1).get(0).getKey()).withFailMessage("Client 1 should be the hottest").isEqualTo("client1");
+    }
+}
@@ -6,7 +6,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import redis.clients.jedis.Jedis;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class SlidingWindowRateLimiterTest {
 
@@ -115,4 +120,116 @@ class SlidingWindowRateLimiterTest {
                 .isTrue();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void givenSlidingWindowRateLimiterWhenDecidingForManyClientsThenShouldReturnOneResultPerClient() {
+        slidingWindowRateLimiter = new SlidingWindowRateLimiter(jedis, 10, 1, 1);
+
+        Map<String, RateLimitResult> first = slidingWindowRateLimiter.decideAll(List.of("client1", "client2", "client1"));
+        Map<String, RateLimitResult> second = slidingWindowRateLimiter.decideAll(List.of("client1", "client2"));
+
+        assertThat(first.values().stream().allMatch(RateLimitResult::allowed))
+                .withFailMessage("The first request of every client should be allowed but was %s", first)
+                .isTrue();
+        assertThat(first.size())
+                .withFailMessage("A repeated client id should be decided once")
+                .isEqualTo(2);
+        assertThat(second.values().stream().noneMatch(RateLimitResult::allowed))
+                .withFailMessage("The second request of every client should be denied but was %s", second)
+                .isTrue();
+    }
+
+    @Test
+    public void givenSlidingWindowRateLimiterWhenWindowHasManySubWindowsThenShouldKeepARunningTotal() {
+        slidingWindowRateLimiter = new SlidingWindowRateLimiter(jedis, 3600, 1, 3);
+
+        for (int i = 1; i <= 3; i++) {
+            assertThat(slidingWindowRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request %d should be allowed", i)
+                    .isTrue();
+        }
+        assertThat(slidingWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond limit should be denied")
+                .isFalse();
+
+        String key = "rate-limiter: client1";
+        assertThat(jedis.hget(key, "total"))
+                .withFailMessage("The running total should count the allowed requests only")
+                .isEqualTo("3");
+        assertThat(jedis.hlen(key))
+                .withFailMessage("Only the used sub-windows should be stored next to the total and the newest sub-window")
+                .isLessThanOrEqualTo(2 + 3);
+    }
+
+    @Test
+    public void givenSlidingWindowRateLimiterWhenRequestingSeveralPermitsThenShouldConsumeAllOrNone() {
+        slidingWindowRateLimiter = new SlidingWindowRateLimiter(jedis, 60, 1, 5);
+
+        assertThat(slidingWindowRateLimiter.isAllowed("client1", 3))
+                .withFailMessage("A request for 3 of 5 permits should be allowed")
+                .isTrue();
+        assertThat(slidingWindowRateLimiter.isAllowed("client1", 3))
+                .withFailMessage("A request for 3 permits with 2 left should be denied")
+                .isFalse();
+        assertThat(slidingWindowRateLimiter.isAllowed("client1", 2))
+                .withFailMessage("The denied request should not have consumed any permit")
+                .isTrue();
+        assertThat(jedis.hget("rate-limiter: client1", "total"))
+                .withFailMessage("The running total should count permits, not requests")
+                .isEqualTo("5");
+    }
+
+    @Test
+    public void givenSlidingWindowRateLimiterWhenDecidingWeightedRequestsForManyClientsThenShouldChargeEachItsCost() {
+        slidingWindowRateLimiter = new SlidingWindowRateLimiter(jedis, 60, 1, 5);
+        Map<String, Integer> costs = new LinkedHashMap<>();
+        costs.put("client1", 5);
+        costs.put("client2", 6);
+        costs.put("client3", 1);
+
+        Map<String, RateLimitResult> results = slidingWindowRateLimiter.decideAll(costs);
+
+        assertThat(results.get("client1").allowed())
+                .withFailMessage("A request for the whole limit should be allowed")
+                .isTrue();
+        assertThat(results.get("client2").retryAfterMillis())
+                .withFailMessage("A request for more than the limit should never be allowed")
+                .isEqualTo(-1L);
+        assertThat(results.get("client3").remaining())
+                .withFailMessage("A request for one permit should leave 4")
+                .isEqualTo(4L);
+        assertThat(slidingWindowRateLimiter.isAllowed("client1"))
+                .withFailMessage("The weighted request should have used up the limit of client1")
+                .isFalse();
+    }
+
+    @Test
+    public void givenPolicyWindowShorterThanSubWindowWhenRequestingThenShouldEnforceThePolicyWindow() {
+        slidingWindowRateLimiter = new SlidingWindowRateLimiter(jedis, 3600, 60, 100);
+        RateLimitPolicy policy = RateLimitPolicy.parse("10/10s");
+        for (int i = 1; i <= 10; i++) {
+            assertThat(slidingWindowRateLimiter.tryAcquire("client1", 1, policy).allowed())
+                    .withFailMessage("Request %d should be allowed", i)
+                    .isTrue();
+        }
+
+        RateLimitResult denied = slidingWindowRateLimiter.tryAcquire("client1", 1, policy);
+        assertThat(denied.allowed())
+                .withFailMessage("Request beyond the limit of the policy should be denied")
+                .isFalse();
+        assertThat(denied.retryAfterMillis())
+                .withFailMessage("The client should retry within the 10s window of the policy")
+                .isBetween(1L, 10_000L);
+        assertThat(denied.resetAfterMillis())
+                .withFailMessage("The requests should leave the window within the 10s of the policy")
+                .isBetween(1L, 10_000L);
+    }
+
+    @Test
+    public void givenPolicyWindowNotMultipleOfSubWindowWhenRequestingThenShouldThrow() {
+        slidingWindowRateLimiter = new SlidingWindowRateLimiter(jedis, 3600, 60, 100);
+
+        assertThatThrownBy(() -> slidingWindowRateLimiter.tryAcquire("client1", 1, RateLimitPolicy.parse("10/90s")))
+                .withFailMessage("A policy window that is not a whole number of sub-windows should be rejected")
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
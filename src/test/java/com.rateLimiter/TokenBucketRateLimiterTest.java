@@ -6,7 +6,13 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -151,4 +157,179 @@ class TokenBucketRateLimiterTest {
                 .isEqualTo(0);
     }
 
-}
\ No newline at end of file
+    @Test
+    void givenTokenBucketRateLimiterWhenRequestingSeveralPermitsThenShouldConsumeAllOrNone() {
+        String clientId = "client1";
+        tokenBucketRateLimiter = new TokenBucketRateLimiter(jedis, 5, 0.5);
+
+        assertThat(tokenBucketRateLimiter.isAllowed(clientId, 3))
+                .withFailMessage("Request for 3 permits should be allowed within bucket capacity")
+                .isTrue();
+        assertThat(tokenBucketRateLimiter.isAllowed(clientId, 3))
+                .withFailMessage("Request for 3 permits should be denied with only 2 tokens left")
+                .isFalse();
+        assertThat(tokenBucketRateLimiter.isAllowed(clientId, 2))
+                .withFailMessage("Request for the 2 remaining permits should be allowed")
+                .isTrue();
+
+        String key = "rate-limit:" + clientId + ":count";
+        assertThat(Integer.parseInt(jedis.get(key)))
+                .withFailMessage("The denied request should not consume any tokens")
+                .isEqualTo(0);
+    }
+
+    @Test
+    void givenTokenBucketRateLimiterWhenManyAsyncRequestsArriveThenShouldCoalesceThemWithoutExceedingCapacity() {
+        try (JedisPooled jedisPooled = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+             TokenBucketRateLimiter asyncRateLimiter = new TokenBucketRateLimiter(jedisPooled, 50, 0.001)) {
+            RateLimiterMetrics metrics = new RateLimiterMetrics();
+            asyncRateLimiter.setListener(metrics);
+
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int i = 1; i <= 200; i++) {
+                futures.add(asyncRateLimiter.isAllowedAsync("client1"));
+            }
+            long allowedCount = futures.stream().filter(CompletableFuture::join).count();
+
+            assertThat(allowedCount)
+                    .withFailMessage("Exactly the bucket capacity should be allowed but %d requests were", allowedCount)
+                    .isEqualTo(50L);
+            assertThat(metrics.latency(RateLimiterListener.ASYNC_FLUSH).count())
+                    .withFailMessage("The async requests should be sent in fewer pipelines than requests")
+                    .isLessThan(200);
+        }
+    }
+
+    @Test
+    void givenAsyncRequestsRacingCloseWhenClosingThenEveryFutureShouldCompleteAndLaterCallsFail() throws InterruptedException {
+        try (JedisPooled jedisPooled = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort())) {
+            TokenBucketRateLimiter asyncRateLimiter = new TokenBucketRateLimiter(jedisPooled, 1_000, 0.001);
+            List<CompletableFuture<Boolean>> futures = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> submitters = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                submitters.add(Thread.ofPlatform().start(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        futures.add(asyncRateLimiter.isAllowedAsync("client1"));
+                    }
+                }));
+            }
+            asyncRateLimiter.close();
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+
+            for (CompletableFuture<Boolean> future : futures) {
+                assertThat(future.handle((allowed, error) -> true).completeOnTimeout(false, 5, TimeUnit.SECONDS).join())
+                        .withFailMessage("Every request submitted around close should be either decided or failed")
+                        .isTrue();
+            }
+            assertThat(asyncRateLimiter.isAllowedAsync("client1").isCompletedExceptionally())
+                    .withFailMessage("An asynchronous call on a closed limiter should fail instead of starting a new dispatcher")
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void givenHashTaggedKeysWhenClientStateIsStoredThenAllKeysOfAClientShouldShareASlot() {
+        tokenBucketRateLimiter = new TokenBucketRateLimiter(jedis, 3, 0.5);
+        tokenBucketRateLimiter.setHashTaggedKeys(true);
+
+        List<String> keys = tokenBucketRateLimiter.keys("client1", System.currentTimeMillis());
+        assertThat(keys)
+                .withFailMessage("The client id should be wrapped in a hash tag but keys were %s", keys)
+                .containsExactly("rate-limit:{client1}:count", "rate-limit:{client1}:lastRefill");
+        assertThat(JedisClusterCRC16.getSlot(keys.get(0)))
+                .withFailMessage("The token count and the last refill time should be in the same slot")
+                .isEqualTo(JedisClusterCRC16.getSlot(keys.get(1)));
+
+        for (int i = 1; i <= 3; i++) {
+            assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request %d should be allowed", i)
+                    .isTrue();
+        }
+        assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                .withFailMessage("Request beyond bucket capacity should be denied")
+                .isFalse();
+        assertThat(jedis.get("rate-limit:{client1}:count"))
+                .withFailMessage("The state should be stored under the hash-tagged key")
+                .isEqualTo("0");
+    }
+
+    @Test
+    void givenTokenBucketRateLimiterWhenRequestsAreDecidedThenShouldReportRemainingTokensAndRefillTimes() {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(jedis, 4, 1);
+        RateLimitResult result = rateLimiter.tryAcquire("client1", 3);
+        assertThat(result.remaining())
+                .withFailMessage("One token should be left")
+                .isEqualTo(1L);
+        assertThat(result.resetAfterMillis())
+                .withFailMessage("The bucket should be full again in about three seconds")
+                .isBetween(2_000L, 3_000L);
+
+        RateLimitResult denied = rateLimiter.tryAcquire("client1", 2);
+        assertThat(denied.allowed())
+                .withFailMessage("Request for more tokens than left should be denied")
+                .isFalse();
+        assertThat(denied.retryAfterMillis())
+                .withFailMessage("The missing token should be refilled within a second")
+                .isBetween(1L, 1_000L);
+        assertThat(rateLimiter.tryAcquire("client1", 5).retryAfterMillis())
+                .withFailMessage("Request for more tokens than the capacity should never be allowed")
+                .isEqualTo(-1L);
+    }
+
+    @Test
+    void givenCompactStorageWhenManyClientsAreStoredThenShouldUseLessMemoryPerClient() {
+        int clients = 100;
+        try (JedisPooled pooled = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort())) {
+            TokenBucketRateLimiter separateKeys = new TokenBucketRateLimiter(pooled, 10, 1, TokenBucketRateLimiter.Storage.SEPARATE_KEYS);
+            TokenBucketRateLimiter compactHash = new TokenBucketRateLimiter(pooled, 10, 1, TokenBucketRateLimiter.Storage.COMPACT_HASH);
+            long separateBytes = 0;
+            long compactBytes = 0;
+            for (int i = 0; i < clients; i++) {
+                String clientId = "client" + i;
+                separateKeys.isAllowed(clientId);
+                compactHash.isAllowed(clientId);
+                for (String key : separateKeys.keys(clientId, 0)) {
+                    separateBytes += jedis.memoryUsage(key);
+                }
+                for (String key : compactHash.keys(clientId, 0)) {
+                    compactBytes += jedis.memoryUsage(key);
+                }
+            }
+            System.out.printf("Bytes per client: %d with separate keys, %d with a compact hash%n",
+                    separateBytes / clients, compactBytes / clients);
+
+            assertThat(compactBytes)
+                    .withFailMessage("A compact hash should use less memory than two keys but used %d vs %d bytes",
+                            compactBytes, separateBytes)
+                    .isLessThan(separateBytes);
+        }
+    }
+
+    @Test
+    void givenCompactStorageWhenBucketIsIdleThenItsStateShouldExpireOnceFull() throws InterruptedException {
+        try (JedisPooled pooled = new JedisPooled(redisContainer.getHost(), redisContainer.getFirstMappedPort())) {
+            tokenBucketRateLimiter = new TokenBucketRateLimiter(pooled, 2, 10, TokenBucketRateLimiter.Storage.COMPACT_HASH);
+            String key = tokenBucketRateLimiter.keys("client1", 0).get(0);
+
+            assertThat(tokenBucketRateLimiter.isAllowed("client1", 2))
+                    .withFailMessage("The whole bucket should be allowed")
+                    .isTrue();
+            assertThat(jedis.pttl(key))
+                    .withFailMessage("The state should expire when the bucket is full again, in about 200ms")
+                    .isBetween(1L, 200L);
+            assertThat(tokenBucketRateLimiter.isAllowed("client1"))
+                    .withFailMessage("Request beyond bucket capacity should be denied")
+                    .isFalse();
+
+            TimeUnit.MILLISECONDS.sleep(300);
+            assertThat(jedis.exists(key))
+                    .withFailMessage("An idle bucket should disappear once it is full")
+                    .isFalse();
+            assertThat(tokenBucketRateLimiter.isAllowed("client1", 2))
+                    .withFailMessage("An expired bucket should be full")
+                    .isTrue();
+        }
+    }
+}